@@ -0,0 +1,131 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Caches an OAuth access token for its {@code expires_in} lifetime.
+ *
+ * <p>The token is refreshed early (skew minus a random jitter before expiry) in the background
+ * while the current one keeps being served. Only one refresh runs at a time: every subscriber
+ * that needs a token while it is in flight waits on that same refresh. A refresh that has not
+ * answered within {@code fetchTimeout} fails, so a hung token endpoint cannot strand its waiters.
+ */
+final class AccessTokenCache {
+
+  record Token(String value, Duration expiresIn) {}
+
+  private record Entry(String value, long refreshAtNanos, long expiresAtNanos) {}
+
+  private final Supplier<Mono<Token>> fetcher;
+  private final long skewNanos;
+  private final long jitterNanos;
+  private final Duration fetchTimeout;
+
+  private final AtomicReference<Entry> current = new AtomicReference<>();
+  private final AtomicReference<Mono<String>> inflight = new AtomicReference<>();
+
+  private final LongCounter hits;
+  private final LongCounter misses;
+  private final LongCounter refreshFailures;
+  private final DoubleHistogram refreshLatency;
+
+  AccessTokenCache(Supplier<Mono<Token>> fetcher, Duration refreshSkew, Duration refreshJitter,
+                   Duration fetchTimeout, Meter meter) {
+    this.fetcher = fetcher;
+    this.skewNanos = refreshSkew.toNanos();
+    this.jitterNanos = refreshJitter.toNanos();
+    this.fetchTimeout = fetchTimeout;
+    this.hits = meter.counterBuilder("apigee.token.cache.hits")
+        .setDescription("Token requests served from the cache").build();
+    this.misses = meter.counterBuilder("apigee.token.cache.misses")
+        .setDescription("Token requests that had to wait for a refresh").build();
+    this.refreshFailures = meter.counterBuilder("apigee.token.refresh.failures")
+        .setDescription("Failed token refreshes").build();
+    this.refreshLatency = meter.histogramBuilder("apigee.token.refresh.duration")
+        .setDescription("Round trip to the token endpoint").setUnit("ms").build();
+  }
+
+  /** A cached token if one is still valid, otherwise the result of the shared refresh. */
+  Mono<String> get() {
+    return Mono.deferContextual(view -> {
+      Entry e = current.get();
+      long now = System.nanoTime();
+      if (e != null && now - e.expiresAtNanos < 0) {
+        hits.add(1);
+        if (now - e.refreshAtNanos >= 0) {
+          // Early refresh; callers keep getting the current token meanwhile. Not traced as
+          // part of this call, which does not wait for it
+          refresh(Context.empty());
+        }
+        return Mono.just(e.value);
+      }
+      misses.add(1);
+      return refresh(view);
+    });
+  }
+
+  /**
+   * Starts a refresh unless one is already running, and returns the shared result. The fetch
+   * runs in {@code context}, so it is traced under the call that started it.
+   */
+  private Mono<String> refresh(ContextView context) {
+    for (;;) {
+      Mono<String> running = inflight.get();
+      if (running != null) return running;
+
+      Sinks.One<String> sink = Sinks.one();
+      Mono<String> shared = sink.asMono();
+      if (!inflight.compareAndSet(null, shared)) continue;
+
+      long start = System.nanoTime();
+      try {
+        fetcher.get()
+            .timeout(fetchTimeout)
+            .contextWrite(context)
+            .subscribe(
+                token -> {
+                  current.set(entry(token, start));
+                  inflight.compareAndSet(shared, null);
+                  refreshLatency.record((System.nanoTime() - start) / 1_000_000.0);
+                  sink.tryEmitValue(token.value());
+                },
+                err -> failed(shared, sink, err),
+                () -> {
+                  // No-op after a value; covers an empty token response
+                  inflight.compareAndSet(shared, null);
+                  sink.tryEmitEmpty();
+                });
+      } catch (RuntimeException err) {
+        // The fetcher threw before returning a Mono
+        failed(shared, sink, err);
+      }
+      return shared;
+    }
+  }
+
+  private void failed(Mono<String> shared, Sinks.One<String> sink, Throwable err) {
+    inflight.compareAndSet(shared, null);
+    refreshFailures.add(1);
+    sink.tryEmitError(err);
+  }
+
+  private Entry entry(Token token, long fetchStartNanos) {
+    // Lifetime counts from when we asked, not when the answer arrived
+    long lifetime = token.expiresIn().toNanos();
+    long expiresAt = fetchStartNanos + lifetime;
+    long jitter = jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0;
+    long early = Math.min(skewNanos + jitter, lifetime / 2);
+    return new Entry(token.value(), expiresAt - early, expiresAt);
+  }
+}
@@ -2,11 +2,20 @@ package com.example.demoapp;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 @ConfigurationProperties(prefix = "apigee")
 public class ApigeeProperties {
   private String tokenUrl;
   private String consumerKey;
   private String consumerSecret;
+  // Token cache: refresh this long (minus up to refreshJitter) before expires_in runs out
+  private Duration refreshSkew = Duration.ofSeconds(60);
+  private Duration refreshJitter = Duration.ofSeconds(15);
+  // Used when the token response has no usable expires_in
+  private Duration defaultExpiresIn = Duration.ofMinutes(5);
+  // A token fetch that takes longer fails, and the next caller starts a new one
+  private Duration fetchTimeout = Duration.ofSeconds(10);
 
   public String getTokenUrl() { return tokenUrl; }
   public void setTokenUrl(String tokenUrl) { this.tokenUrl = tokenUrl; }
@@ -14,4 +23,16 @@ public class ApigeeProperties {
   public void setConsumerKey(String consumerKey) { this.consumerKey = consumerKey; }
   public String getConsumerSecret() { return consumerSecret; }
   public void setConsumerSecret(String consumerSecret) { this.consumerSecret = consumerSecret; }
+  public Duration getRefreshSkew() { return refreshSkew; }
+  public void setRefreshSkew(Duration refreshSkew) { this.refreshSkew = refreshSkew; }
+  public Duration getRefreshJitter() { return refreshJitter; }
+  public void setRefreshJitter(Duration refreshJitter) { this.refreshJitter = refreshJitter; }
+  public Duration getDefaultExpiresIn() { return defaultExpiresIn; }
+  public void setDefaultExpiresIn(Duration defaultExpiresIn) { this.defaultExpiresIn = defaultExpiresIn; }
+  public Duration getFetchTimeout() { return fetchTimeout; }
+  public void setFetchTimeout(Duration fetchTimeout) { this.fetchTimeout = fetchTimeout; }
+
+  public boolean isConfigured() {
+    return tokenUrl != null && consumerKey != null && consumerSecret != null;
+  }
 }
@@ -1,19 +1,41 @@
 package com.example.demoapp;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @ConfigurationProperties(prefix = "app")
 public class AppProperties {
     private String url;
+    // Several upstreams; when empty, url is the only one
+    private List<Endpoint> endpoints = new ArrayList<>();
+    private Routing routing = new Routing();
     private String bearerToken;
     private Map<String, String> extraHeaders;
     private String body;
     private String bodyFile;
+    private boolean stream;
+    // Share one upstream call between identical requests that are in flight at the same time
+    private boolean mergeInflight;
+    private Bulk bulk = new Bulk();
+    private Http http = new Http();
+    private Template template = new Template();
+    private Cache cache = new Cache();
+    private Resilience resilience = new Resilience();
+    private Limiter limiter = new Limiter();
+    private Compression compression = new Compression();
 
     public String getUrl() { return url; }
     public void setUrl(String url) { this.url = url; }
 
+    public List<Endpoint> getEndpoints() { return endpoints; }
+    public void setEndpoints(List<Endpoint> endpoints) { this.endpoints = endpoints; }
+
+    public Routing getRouting() { return routing; }
+    public void setRouting(Routing routing) { this.routing = routing; }
+
     public String getBearerToken() { return bearerToken; }
     public void setBearerToken(String bearerToken) { this.bearerToken = bearerToken; }
 
@@ -25,4 +47,318 @@ public class AppProperties {
 
     public String getBodyFile() { return bodyFile; }
     public void setBodyFile(String bodyFile) { this.bodyFile = bodyFile; }
+
+    public boolean isStream() { return stream; }
+    public void setStream(boolean stream) { this.stream = stream; }
+
+    public boolean isMergeInflight() { return mergeInflight; }
+    public void setMergeInflight(boolean mergeInflight) { this.mergeInflight = mergeInflight; }
+
+    public Bulk getBulk() { return bulk; }
+    public void setBulk(Bulk bulk) { this.bulk = bulk; }
+
+    public Http getHttp() { return http; }
+    public void setHttp(Http http) { this.http = http; }
+
+    public Template getTemplate() { return template; }
+    public void setTemplate(Template template) { this.template = template; }
+
+    public Cache getCache() { return cache; }
+    public void setCache(Cache cache) { this.cache = cache; }
+
+    public Resilience getResilience() { return resilience; }
+    public void setResilience(Resilience resilience) { this.resilience = resilience; }
+
+    public Limiter getLimiter() { return limiter; }
+    public void setLimiter(Limiter limiter) { this.limiter = limiter; }
+
+    public Compression getCompression() { return compression; }
+    public void setCompression(Compression compression) { this.compression = compression; }
+
+    /** Bulk mode: send every line of a JSONL file as a request body (app.bulk.*). */
+    public static class Bulk {
+        private String file;
+        private int concurrency = 16;
+        // reactor | virtual-threads (one blocking pipeline per line, see VirtualThreadBulkRunner)
+        private String mode = "reactor";
+
+        public String getFile() { return file; }
+        public void setFile(String file) { this.file = file; }
+
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public String getMode() { return mode; }
+        public void setMode(String mode) { this.mode = mode; }
+    }
+
+    /**
+     * Template mode (app.template.*): the body is compiled once and only the {{name}}
+     * placeholders are filled per request. In bulk mode each JSONL line is an object of variables.
+     */
+    public static class Template {
+        private String body;
+        private String file;
+        private Map<String, String> variables;
+
+        public String getBody() { return body; }
+        public void setBody(String body) { this.body = body; }
+
+        public String getFile() { return file; }
+        public void setFile(String file) { this.file = file; }
+
+        public Map<String, String> getVariables() { return variables; }
+        public void setVariables(Map<String, String> variables) { this.variables = variables; }
+    }
+
+    /** Response cache for repeated identical requests (app.cache.*). */
+    public static class Cache {
+        private boolean enabled;
+        private int maxEntries = 1000;
+        private long maxBytes = 64L * 1024 * 1024;
+        private Duration ttl = Duration.ofMinutes(10);
+        private boolean offHeap;
+        // Only reuse responses for temperature-0 requests
+        private boolean deterministicOnly = true;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(int maxEntries) { this.maxEntries = maxEntries; }
+
+        public long getMaxBytes() { return maxBytes; }
+        public void setMaxBytes(long maxBytes) { this.maxBytes = maxBytes; }
+
+        public Duration getTtl() { return ttl; }
+        public void setTtl(Duration ttl) { this.ttl = ttl; }
+
+        public boolean isOffHeap() { return offHeap; }
+        public void setOffHeap(boolean offHeap) { this.offHeap = offHeap; }
+
+        public boolean isDeterministicOnly() { return deterministicOnly; }
+        public void setDeterministicOnly(boolean deterministicOnly) { this.deterministicOnly = deterministicOnly; }
+    }
+
+    /** Shared Reactor Netty client for every outbound call (app.http.*). */
+    public static class Http {
+        private int maxConnections = 500;
+        private int pendingAcquireMaxCount = 1000;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(45);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private boolean http2;
+        // 0 = Reactor Netty default (one per core, at least 4)
+        private int eventLoopThreads;
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration responseTimeout = Duration.ofSeconds(120);
+
+        public int getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+
+        public int getPendingAcquireMaxCount() { return pendingAcquireMaxCount; }
+        public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) { this.pendingAcquireMaxCount = pendingAcquireMaxCount; }
+
+        public Duration getPendingAcquireTimeout() { return pendingAcquireTimeout; }
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) { this.pendingAcquireTimeout = pendingAcquireTimeout; }
+
+        public Duration getMaxIdleTime() { return maxIdleTime; }
+        public void setMaxIdleTime(Duration maxIdleTime) { this.maxIdleTime = maxIdleTime; }
+
+        public Duration getMaxLifeTime() { return maxLifeTime; }
+        public void setMaxLifeTime(Duration maxLifeTime) { this.maxLifeTime = maxLifeTime; }
+
+        public Duration getEvictInBackground() { return evictInBackground; }
+        public void setEvictInBackground(Duration evictInBackground) { this.evictInBackground = evictInBackground; }
+
+        public boolean isHttp2() { return http2; }
+        public void setHttp2(boolean http2) { this.http2 = http2; }
+
+        public int getEventLoopThreads() { return eventLoopThreads; }
+        public void setEventLoopThreads(int eventLoopThreads) { this.eventLoopThreads = eventLoopThreads; }
+
+        public Duration getConnectTimeout() { return connectTimeout; }
+        public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+
+        public Duration getResponseTimeout() { return responseTimeout; }
+        public void setResponseTimeout(Duration responseTimeout) { this.responseTimeout = responseTimeout; }
+    }
+
+    /**
+     * Retries, hedging and a per-attempt timeout for non-streaming calls (app.resilience.*).
+     * Only for calls that are safe to send twice.
+     */
+    public static class Resilience {
+        private boolean enabled;
+        private Duration attemptTimeout = Duration.ofSeconds(60);
+        // Retries on 429, 5xx, connection errors and attempt timeouts
+        private int maxAttempts = 3;
+        private Duration backoff = Duration.ofMillis(250);
+        private Duration maxBackoff = Duration.ofSeconds(10);
+        // Hedge after this percentile of recent successful attempts, never sooner than hedgeMinDelay
+        private boolean hedge = true;
+        private double hedgePercentile = 95;
+        private Duration hedgeMinDelay = Duration.ofMillis(100);
+        // Retries and hedges together may add budgetRatio of the request rate, plus budgetMinPerSecond
+        private double budgetRatio = 0.1;
+        private int budgetMinPerSecond = 5;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public Duration getAttemptTimeout() { return attemptTimeout; }
+        public void setAttemptTimeout(Duration attemptTimeout) { this.attemptTimeout = attemptTimeout; }
+
+        public int getMaxAttempts() { return maxAttempts; }
+        public void setMaxAttempts(int maxAttempts) { this.maxAttempts = maxAttempts; }
+
+        public Duration getBackoff() { return backoff; }
+        public void setBackoff(Duration backoff) { this.backoff = backoff; }
+
+        public Duration getMaxBackoff() { return maxBackoff; }
+        public void setMaxBackoff(Duration maxBackoff) { this.maxBackoff = maxBackoff; }
+
+        public boolean isHedge() { return hedge; }
+        public void setHedge(boolean hedge) { this.hedge = hedge; }
+
+        public double getHedgePercentile() { return hedgePercentile; }
+        public void setHedgePercentile(double hedgePercentile) { this.hedgePercentile = hedgePercentile; }
+
+        public Duration getHedgeMinDelay() { return hedgeMinDelay; }
+        public void setHedgeMinDelay(Duration hedgeMinDelay) { this.hedgeMinDelay = hedgeMinDelay; }
+
+        public double getBudgetRatio() { return budgetRatio; }
+        public void setBudgetRatio(double budgetRatio) { this.budgetRatio = budgetRatio; }
+
+        public int getBudgetMinPerSecond() { return budgetMinPerSecond; }
+        public void setBudgetMinPerSecond(int budgetMinPerSecond) { this.budgetMinPerSecond = budgetMinPerSecond; }
+    }
+
+    /**
+     * Client-side limiter in front of every LLM attempt (app.limiter.*): an AIMD concurrency
+     * limit driven by latency and 429s, plus an optional tokens-per-minute budget.
+     */
+    public static class Limiter {
+        private boolean enabled;
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 500;
+        // Multiplicative decrease on a 429, a timeout or latency above latencyTolerance x the recent minimum
+        private double backoffRatio = 0.7;
+        // 0 = off; call duration also grows with answer length, so only set it for uniform answers
+        private double latencyTolerance;
+        // 0 = no token budget
+        private long tokensPerMinute;
+        // Output estimate until real usage has been seen
+        private long defaultOutputTokens = 500;
+        private int maxQueued = 10000;
+        private Duration queueTimeout = Duration.ofSeconds(60);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getInitialLimit() { return initialLimit; }
+        public void setInitialLimit(int initialLimit) { this.initialLimit = initialLimit; }
+
+        public int getMinLimit() { return minLimit; }
+        public void setMinLimit(int minLimit) { this.minLimit = minLimit; }
+
+        public int getMaxLimit() { return maxLimit; }
+        public void setMaxLimit(int maxLimit) { this.maxLimit = maxLimit; }
+
+        public double getBackoffRatio() { return backoffRatio; }
+        public void setBackoffRatio(double backoffRatio) { this.backoffRatio = backoffRatio; }
+
+        public double getLatencyTolerance() { return latencyTolerance; }
+        public void setLatencyTolerance(double latencyTolerance) { this.latencyTolerance = latencyTolerance; }
+
+        public long getTokensPerMinute() { return tokensPerMinute; }
+        public void setTokensPerMinute(long tokensPerMinute) { this.tokensPerMinute = tokensPerMinute; }
+
+        public long getDefaultOutputTokens() { return defaultOutputTokens; }
+        public void setDefaultOutputTokens(long defaultOutputTokens) { this.defaultOutputTokens = defaultOutputTokens; }
+
+        public int getMaxQueued() { return maxQueued; }
+        public void setMaxQueued(int maxQueued) { this.maxQueued = maxQueued; }
+
+        public Duration getQueueTimeout() { return queueTimeout; }
+        public void setQueueTimeout(Duration queueTimeout) { this.queueTimeout = queueTimeout; }
+    }
+
+    /** One upstream LLM endpoint (app.endpoints[n]); name defaults to the URL. */
+    public static class Endpoint {
+        private String name;
+        private String url;
+        private int weight = 1;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+
+        public int getWeight() { return weight; }
+        public void setWeight(int weight) { this.weight = weight; }
+    }
+
+    /** How calls are spread over app.endpoints, and when an endpoint is ejected (app.routing.*). */
+    public static class Routing {
+        // least-outstanding | ewma (latency EWMA times outstanding calls)
+        private String strategy = "least-outstanding";
+        private Duration ewmaDecay = Duration.ofSeconds(10);
+        // Consecutive failures (429, 5xx, connection errors, timeouts) that eject an endpoint
+        private int ejectAfterFailures = 5;
+        // Doubles with each ejection in a row, up to maxEjectionTime
+        private Duration ejectionTime = Duration.ofSeconds(30);
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+        private int maxEjectedPercent = 50;
+
+        public String getStrategy() { return strategy; }
+        public void setStrategy(String strategy) { this.strategy = strategy; }
+
+        public Duration getEwmaDecay() { return ewmaDecay; }
+        public void setEwmaDecay(Duration ewmaDecay) { this.ewmaDecay = ewmaDecay; }
+
+        public int getEjectAfterFailures() { return ejectAfterFailures; }
+        public void setEjectAfterFailures(int ejectAfterFailures) { this.ejectAfterFailures = ejectAfterFailures; }
+
+        public Duration getEjectionTime() { return ejectionTime; }
+        public void setEjectionTime(Duration ejectionTime) { this.ejectionTime = ejectionTime; }
+
+        public Duration getMaxEjectionTime() { return maxEjectionTime; }
+        public void setMaxEjectionTime(Duration maxEjectionTime) { this.maxEjectionTime = maxEjectionTime; }
+
+        public int getMaxEjectedPercent() { return maxEjectedPercent; }
+        public void setMaxEjectedPercent(int maxEjectedPercent) { this.maxEjectedPercent = maxEjectedPercent; }
+    }
+
+    /** Request body and response compression on the LLM link (app.compression.*). */
+    public static class Compression {
+        // none | gzip | zstd (zstd needs zstd-jni on the classpath)
+        private String request = "none";
+        // Smaller bodies are sent as-is
+        private int minRequestBytes = 16 * 1024;
+        // -1 = the codec's default
+        private int level = -1;
+        // Send Accept-Encoding and decompress responses as they stream in
+        private boolean responses = true;
+        // A response that decodes to more than this fails the call (decompression bomb guard)
+        private long maxResponseBytes = 64L * 1024 * 1024;
+
+        public String getRequest() { return request; }
+        public void setRequest(String request) { this.request = request; }
+
+        public int getMinRequestBytes() { return minRequestBytes; }
+        public void setMinRequestBytes(int minRequestBytes) { this.minRequestBytes = minRequestBytes; }
+
+        public int getLevel() { return level; }
+        public void setLevel(int level) { this.level = level; }
+
+        public boolean isResponses() { return responses; }
+        public void setResponses(boolean responses) { this.responses = responses; }
+
+        public long getMaxResponseBytes() { return maxResponseBytes; }
+        public void setMaxResponseBytes(long maxResponseBytes) { this.maxResponseBytes = maxResponseBytes; }
+    }
 }
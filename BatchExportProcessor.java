@@ -0,0 +1,200 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import org.apache.commons.logging.LogFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A batching span processor like the SDK's {@code BatchSpanProcessor}, with the queue and the
+ * exports visible as metrics ({@code otel.bsp.*}, tagged with the destination name).
+ *
+ * <p>In adaptive mode the batch size doubles (up to 4x the configured size) and the schedule
+ * delay halves (down to 1/10) while the queue is more than half full, and both step back to the
+ * configured values once it drains below 10%.
+ */
+final class BatchExportProcessor implements SpanProcessor {
+
+  record Settings(int maxQueueSize, int maxExportBatchSize, Duration scheduleDelay,
+                  Duration exportTimeout, boolean adaptive) {}
+
+  private static final AttributeKey<String> DESTINATION = AttributeKey.stringKey("destination");
+
+  private final String name;
+  private final SpanExporter exporter;
+  private final Settings settings;
+  private final BlockingQueue<ReadableSpan> queue;
+  private final Object exportLock = new Object();
+  private final Thread worker;
+  private final RateLimitedLog exportLog =
+      new RateLimitedLog(LogFactory.getLog(BatchExportProcessor.class), Duration.ofMinutes(1));
+
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder exported = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private volatile DoubleHistogram exportDuration; // null until metrics are bound
+
+  private volatile int batchSize;
+  private volatile long delayNanos;
+  private volatile boolean shutdown;
+
+  BatchExportProcessor(String name, SpanExporter exporter, Settings settings) {
+    this.name = name;
+    this.exporter = exporter;
+    this.settings = settings;
+    this.queue = new ArrayBlockingQueue<>(settings.maxQueueSize());
+    this.batchSize = settings.maxExportBatchSize();
+    this.delayNanos = settings.scheduleDelay().toNanos();
+    this.worker = new Thread(this::run, "span-export-" + name);
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /** Registers the health instruments; called once the meter provider exists. */
+  void bindMetrics(Meter meter) {
+    Attributes attrs = Attributes.of(DESTINATION, name);
+    meter.gaugeBuilder("otel.bsp.queue.size").ofLongs()
+        .setDescription("Spans waiting to be exported")
+        .buildWithCallback(m -> m.record(queue.size(), attrs));
+    meter.gaugeBuilder("otel.bsp.batch.size").ofLongs()
+        .setDescription("Current export batch size")
+        .buildWithCallback(m -> m.record(batchSize, attrs));
+    meter.counterBuilder("otel.bsp.spans.dropped")
+        .setDescription("Spans dropped because the queue was full")
+        .buildWithCallback(m -> m.record(dropped.sum(), attrs));
+    meter.counterBuilder("otel.bsp.spans.exported")
+        .buildWithCallback(m -> m.record(exported.sum(), attrs));
+    meter.counterBuilder("otel.bsp.export.failures")
+        .setDescription("Export calls that failed, threw or timed out")
+        .buildWithCallback(m -> m.record(failures.sum(), attrs));
+    exportDuration = meter.histogramBuilder("otel.bsp.export.duration")
+        .setUnit("ms")
+        .build();
+  }
+
+  @Override
+  public void onStart(Context parentContext, ReadWriteSpan span) {}
+
+  @Override
+  public boolean isStartRequired() {
+    return false;
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    if (!span.getSpanContext().isSampled()) return;
+    if (!queue.offer(span)) {
+      dropped.increment();
+      return;
+    }
+    if (queue.size() >= batchSize) LockSupport.unpark(worker);
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  @Override
+  public CompletableResultCode forceFlush() {
+    boolean ok = true;
+    while (!queue.isEmpty()) {
+      ok &= exportQueued(Integer.MAX_VALUE);
+    }
+    CompletableResultCode flush = exporter.flush();
+    return ok ? flush : CompletableResultCode.ofFailure();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    shutdown = true;
+    LockSupport.unpark(worker);
+    try {
+      worker.join(settings.exportTimeout().toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    forceFlush();
+    return exporter.shutdown();
+  }
+
+  // ---------- worker ----------
+
+  private void run() {
+    while (!shutdown) {
+      long deadline = System.nanoTime() + delayNanos;
+      while (!shutdown && queue.size() < batchSize) {
+        long left = deadline - System.nanoTime();
+        if (left <= 0) break;
+        LockSupport.parkNanos(this, left);
+      }
+      exportQueued(batchSize);
+      if (settings.adaptive()) adapt();
+    }
+  }
+
+  /** Exports up to {@code limit} queued spans; false if the export failed or timed out. */
+  private boolean exportQueued(int limit) {
+    synchronized (exportLock) {
+      List<ReadableSpan> drained = new ArrayList<>(Math.min(limit, queue.size()));
+      queue.drainTo(drained, limit);
+      if (drained.isEmpty()) return true;
+
+      List<SpanData> batch = new ArrayList<>(drained.size());
+      for (ReadableSpan span : drained) batch.add(span.toSpanData());
+
+      long start = System.nanoTime();
+      boolean success;
+      try {
+        success = exporter.export(batch)
+            .join(settings.exportTimeout().toNanos(), TimeUnit.NANOSECONDS)
+            .isSuccess();
+      } catch (Throwable t) {
+        // A throwing exporter must not kill the worker; the batch is lost like any failed export
+        exportLog.warn(t, "Span export to %s threw", name);
+        success = false;
+      }
+      DoubleHistogram histogram = exportDuration;
+      if (histogram != null) {
+        histogram.record((System.nanoTime() - start) / 1_000_000.0, Attributes.of(DESTINATION, name));
+      }
+      if (success) {
+        exported.add(batch.size());
+        return true;
+      }
+      failures.increment();
+      return false;
+    }
+  }
+
+  private void adapt() {
+    double fill = (double) queue.size() / settings.maxQueueSize();
+    int baseBatch = settings.maxExportBatchSize();
+    long baseDelay = settings.scheduleDelay().toNanos();
+    if (fill > 0.5) {
+      batchSize = Math.min(Math.min(baseBatch * 4, settings.maxQueueSize()), batchSize * 2);
+      delayNanos = Math.max(baseDelay / 10, delayNanos / 2);
+    } else if (fill < 0.1) {
+      batchSize = Math.max(baseBatch, batchSize / 2);
+      delayNanos = Math.min(baseDelay, delayNanos * 2);
+    }
+  }
+}
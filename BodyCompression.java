@@ -0,0 +1,190 @@
+package com.example.demoapp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.compression.ZstdDecoder;
+import io.netty.handler.codec.compression.ZstdEncoder;
+import io.opentelemetry.api.trace.Span;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Request body compression for LLM calls ({@code app.compression.*}). Bodies of at least
+ * {@code minRequestBytes} are sent gzip or zstd encoded; the compressed bytes are cached on the
+ * {@link ChatBody}, so retries, hedges and repeated bodies compress once. Compression runs on
+ * {@code boundedElastic}, never on the event loop that asked for it; bodies too large for the
+ * zstd encoder's buffer are sent plain.
+ *
+ * <p>A server that answers an encoded body with 415 gets the call again uncompressed, and that
+ * URL is sent plain from then on. Also builds the matching streaming decoders for
+ * {@link DecompressingExchangeFilter}.
+ */
+@Component
+public class BodyCompression {
+
+  /** A compressed form of a body. */
+  record Compressed(String encoding, byte[] bytes) {}
+
+  private static final Log LOG = LogFactory.getLog(BodyCompression.class);
+  private static final int ZSTD_BLOCK_SIZE = 64 * 1024;
+  private static final int ZSTD_MAX_ENCODE_SIZE = 32 * 1024 * 1024;
+  // ZstdEncoder rejects input whose compress bound exceeds ZSTD_MAX_ENCODE_SIZE; the bound is
+  // under 0.5% above the input at this block size
+  private static final int ZSTD_MAX_BODY_SIZE = ZSTD_MAX_ENCODE_SIZE - ZSTD_MAX_ENCODE_SIZE / 128;
+
+  private final AppProperties.Compression settings;
+  private final String encoding;
+  // URLs that rejected an encoded body; sent plain until restart
+  private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+  public BodyCompression(AppProperties props) {
+    this.settings = props.getCompression();
+    this.encoding = switch (settings.getRequest()) {
+      case "none" -> null;
+      case "gzip" -> "gzip";
+      case "zstd" -> {
+        if (!Zstd.isAvailable()) {
+          throw new IllegalStateException("app.compression.request=zstd needs zstd-jni on the classpath",
+              Zstd.cause());
+        }
+        yield "zstd";
+      }
+      default -> throw new IllegalArgumentException("app.compression.request must be none, gzip or zstd");
+    };
+  }
+
+  /** The encoding to send {@code body} to {@code url} with, or null to send it as-is. */
+  public String encodingFor(String url, ChatBody body) {
+    if (encoding == null || body.size() < settings.getMinRequestBytes() || rejected.contains(url)) return null;
+    if ("zstd".equals(encoding) && body.size() > ZSTD_MAX_BODY_SIZE) return null;
+    return encoding;
+  }
+
+  /** {@link #compress} on {@code boundedElastic}, or at once when the body has it cached. */
+  public Mono<byte[]> compressAsync(ChatBody body, String encoding) {
+    Compressed cached = body.cachedCompressed();
+    if (cached != null && cached.encoding().equals(encoding)) return Mono.just(cached.bytes());
+    // CPU-bound for large bodies; kept off the parallel workers that run timeouts
+    return Mono.fromCallable(() -> compress(body, encoding)).subscribeOn(Schedulers.boundedElastic());
+  }
+
+  /** {@code body} in {@code encoding}, compressed once per body. */
+  public byte[] compress(ChatBody body, String encoding) {
+    Compressed cached = body.cachedCompressed();
+    if (cached != null && cached.encoding().equals(encoding)) return cached.bytes();
+
+    EmbeddedChannel channel = new EmbeddedChannel(encoder(encoding));
+    try {
+      channel.writeOutbound(Unpooled.wrappedBuffer(body.bytes()));
+      channel.finish();
+      ByteBuf out = Unpooled.buffer();
+      for (ByteBuf chunk; (chunk = channel.readOutbound()) != null; ) {
+        out.writeBytes(chunk);
+        chunk.release();
+      }
+      byte[] bytes = new byte[out.readableBytes()];
+      out.readBytes(bytes);
+      out.release();
+      body.cacheCompressed(new Compressed(encoding, bytes));
+      return bytes;
+    } finally {
+      channel.finishAndReleaseAll();
+    }
+  }
+
+  /**
+   * Runs {@code send} with the body's encoding; on a 415 for an encoded body, marks the URL and
+   * runs it once more uncompressed.
+   */
+  public <T> Mono<T> withFallback(String url, ChatBody body, Span span, Function<String, Mono<T>> send) {
+    String enc = encodingFor(url, body);
+    Mono<T> first = send.apply(enc);
+    if (enc == null) return first;
+    return first.onErrorResume(BodyCompression::isRejection, err -> {
+      reject(url, enc, span);
+      return send.apply(null);
+    });
+  }
+
+  /** Streaming form of {@link #withFallback(String, ChatBody, Span, Function)}. */
+  public <T> Flux<T> withFallbackMany(String url, ChatBody body, Span span, Function<String, Flux<T>> send) {
+    String enc = encodingFor(url, body);
+    Flux<T> first = send.apply(enc);
+    if (enc == null) return first;
+    return first.onErrorResume(BodyCompression::isRejection, err -> {
+      reject(url, enc, span);
+      return send.apply(null);
+    });
+  }
+
+  private void reject(String url, String enc, Span span) {
+    if (rejected.add(url)) { // once per URL, so no rate limit needed
+      LOG.warn(url + " rejected " + enc + " request bodies; sending them uncompressed");
+    }
+    span.addEvent("llm.compression.rejected");
+  }
+
+  private static boolean isRejection(Throwable err) {
+    return err instanceof WebClientResponseException e
+        && e.getStatusCode().value() == HttpStatus.UNSUPPORTED_MEDIA_TYPE.value();
+  }
+
+  private ChannelHandler encoder(String encoding) {
+    int level = settings.getLevel();
+    return switch (encoding) {
+      case "gzip" -> level < 0
+          ? ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP)
+          : ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP, level);
+      case "zstd" -> new ZstdEncoder(level < 0 ? 3 : level, ZSTD_BLOCK_SIZE, ZSTD_MAX_ENCODE_SIZE);
+      default -> throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+    };
+  }
+
+  // ---------- responses ----------
+
+  /** Accept-Encoding for responses: what we can decode here. */
+  static String acceptEncoding() {
+    return Zstd.isAvailable() ? "zstd, gzip, deflate" : "gzip, deflate";
+  }
+
+  /** Whether {@link #decoder} handles a response Content-Encoding (lower case). */
+  static boolean canDecode(String contentEncoding) {
+    return switch (contentEncoding) {
+      case "gzip", "x-gzip", "deflate" -> true;
+      case "zstd" -> Zstd.isAvailable();
+      default -> false;
+    };
+  }
+
+  /**
+   * A fresh streaming decoder for a response Content-Encoding accepted by {@link #canDecode}.
+   * The zlib decoders fail once one input chunk decodes to more than {@code maxAllocation}
+   * bytes; {@link ZstdDecoder} has no such cap, so callers also bound the running total.
+   */
+  static ChannelHandler decoder(String contentEncoding, int maxAllocation) {
+    return switch (contentEncoding) {
+      case "gzip", "x-gzip" -> new JdkZlibDecoder(ZlibWrapper.GZIP, maxAllocation);
+      case "deflate" -> new JdkZlibDecoder(ZlibWrapper.ZLIB_OR_NONE, maxAllocation);
+      case "zstd" -> new ZstdDecoder();
+      default -> throw new IllegalArgumentException("Unsupported encoding: " + contentEncoding);
+    };
+  }
+}
@@ -0,0 +1,181 @@
+package com.example.demoapp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.apache.commons.logging.LogFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolves the request body as bytes that are sent unchanged, from (in order)
+ * {@code app.template.*}, {@code app.bodyFile} or {@code app.body}.
+ *
+ * <p>Template variables (configured, or one bulk JSONL line) are checked against the
+ * template's placeholders: missing ones fail the request with the full list, and keys the
+ * template does not use, usually a misspelt name, are logged.
+ *
+ * <p>A template is compiled once at startup. A body file is memory-mapped (small files are
+ * read onto the heap) and kept until its modification time or size changes, so repeated
+ * requests only cost a stat call.
+ *
+ * <p>The file is only checked when a body is resolved, not while it is being sent. Truncating
+ * a mapped file in place under an in-flight request makes the JVM fail that read with an
+ * {@link InternalError} (SIGBUS on Linux). Replace body files by writing a new file and
+ * renaming it over the old one: the mapping keeps the old contents, and the next resolve picks
+ * up the new file.
+ */
+@Component
+public class BodySource {
+
+  // Below this a plain read is cheaper than setting up a mapping
+  private static final long MMAP_THRESHOLD = 64 * 1024;
+
+  private record CachedFile(Path path, FileTime modified, long size, ChatBody body) {}
+
+  private record CachedInline(String text, ChatBody body) {}
+
+  private final AppProperties props;
+  private final BodyTemplate template;
+  private final JsonFactory factory = new JsonFactory();
+  private final AtomicReference<CachedFile> cachedFile = new AtomicReference<>();
+  private final AtomicReference<CachedInline> cachedInline = new AtomicReference<>();
+  private final RateLimitedLog unusedLog =
+      new RateLimitedLog(LogFactory.getLog(BodySource.class), Duration.ofMinutes(1));
+
+  public BodySource(AppProperties props) {
+    this.props = props;
+    this.template = compileTemplate(props.getTemplate());
+  }
+
+  public boolean isTemplated() {
+    return template != null;
+  }
+
+  /** Reads off the event loop; the file check does blocking I/O. */
+  public Mono<ChatBody> resolve() {
+    return Mono.fromCallable(this::resolveNow)
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  public ChatBody resolveNow() throws IOException {
+    if (template != null) {
+      Map<String, String> variables = props.getTemplate().getVariables();
+      return renderChecked(variables != null ? variables : Map.of());
+    }
+    if (StringUtils.hasText(props.getBodyFile())) {
+      return fromFile(Path.of(props.getBodyFile()));
+    }
+    String inlineBody = props.getBody();
+    if (!StringUtils.hasText(inlineBody)) {
+      throw new IllegalArgumentException("Provide a JSON body via app.body, app.bodyFile or app.template");
+    }
+    CachedInline inline = cachedInline.get();
+    if (inline == null || !inline.text().equals(inlineBody)) {
+      inline = new CachedInline(inlineBody, ChatBody.of(inlineBody));
+      cachedInline.set(inline);
+    }
+    return inline.body();
+  }
+
+  /** Renders the template from a flat JSON object of variables, e.g. one bulk JSONL line. */
+  public ChatBody render(String variablesJson) {
+    if (template == null) {
+      throw new IllegalStateException("app.template is not configured");
+    }
+    try {
+      return renderChecked(readVariables(variablesJson));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Template variables are not a JSON object: " + e.getMessage(), e);
+    }
+  }
+
+  // ---------- helpers ----------
+
+  private ChatBody renderChecked(Map<String, String> variables) {
+    Set<String> expected = template.variables();
+    if (!variables.keySet().equals(expected)) {
+      Set<String> missing = new LinkedHashSet<>(expected);
+      missing.removeAll(variables.keySet());
+      Set<String> unused = new LinkedHashSet<>(variables.keySet());
+      unused.removeAll(expected);
+      if (!missing.isEmpty()) {
+        throw new IllegalArgumentException("Missing template variables " + missing
+            + (unused.isEmpty() ? "" : "; not in the template: " + unused));
+      }
+      unusedLog.warn("Template variables %s are not used by app.template", unused);
+    }
+    return template.render(variables);
+  }
+
+  private Map<String, String> readVariables(String json) throws IOException {
+    Map<String, String> variables = new HashMap<>();
+    try (JsonParser p = factory.createParser(json)) {
+      if (p.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("expected an object");
+      }
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String name = p.currentName();
+        JsonToken value = p.nextToken();
+        if (value.isScalarValue() && value != JsonToken.VALUE_NULL) variables.put(name, p.getText());
+        else p.skipChildren();
+      }
+    }
+    return variables;
+  }
+
+  private ChatBody fromFile(Path path) throws IOException {
+    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+    CachedFile cached = cachedFile.get();
+    if (cached != null
+        && cached.path().equals(path)
+        && cached.size() == attrs.size()
+        && cached.modified().equals(attrs.lastModifiedTime())) {
+      return cached.body();
+    }
+
+    ChatBody body = ChatBody.wrap(load(path, attrs.size()));
+    cachedFile.set(new CachedFile(path, attrs.lastModifiedTime(), attrs.size(), body));
+    return body;
+  }
+
+  private static ByteBuffer load(Path path, long size) throws IOException {
+    if (size < MMAP_THRESHOLD) {
+      return ByteBuffer.wrap(Files.readAllBytes(path));
+    }
+    // The mapping stays valid after the channel is closed; it is released when unreachable
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  private static BodyTemplate compileTemplate(AppProperties.Template t) {
+    if (t == null) return null;
+    try {
+      if (StringUtils.hasText(t.getFile())) return BodyTemplate.compile(Files.readString(Path.of(t.getFile())));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read app.template.file " + t.getFile(), e);
+    }
+    return StringUtils.hasText(t.getBody()) ? BodyTemplate.compile(t.getBody()) : null;
+  }
+}
@@ -0,0 +1,155 @@
+package com.example.demoapp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A request body compiled once into fixed UTF-8 segments and {@code {{name}}} placeholders.
+ * Rendering writes the segments and the JSON-escaped variable values straight into one exactly
+ * sized buffer; no tree is built and the fixed part is never re-encoded.
+ *
+ * <p>Placeholders are meant to sit inside JSON string literals, e.g.
+ * {@code {"role": "user", "content": "{{prompt}}"}}; values are escaped as string content.
+ */
+final class BodyTemplate {
+
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private final byte[][] literals; // one more than names: literal, name, literal, ..., literal
+  private final String[] names;
+  private final Set<String> variables; // distinct names, in template order
+  private final int literalBytes;
+
+  private BodyTemplate(byte[][] literals, String[] names) {
+    this.literals = literals;
+    this.names = names;
+    this.variables = Collections.unmodifiableSet(new LinkedHashSet<>(List.of(names)));
+    int total = 0;
+    for (byte[] literal : literals) total += literal.length;
+    this.literalBytes = total;
+  }
+
+  static BodyTemplate compile(String template) {
+    List<byte[]> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    int pos = 0;
+    while (true) {
+      int open = template.indexOf("{{", pos);
+      int close = open < 0 ? -1 : template.indexOf("}}", open + 2);
+      if (close < 0) break;
+      String name = template.substring(open + 2, close).trim();
+      if (name.isEmpty()) {
+        throw new IllegalArgumentException("Empty placeholder at offset " + open + " in app.template");
+      }
+      literals.add(template.substring(pos, open).getBytes(StandardCharsets.UTF_8));
+      names.add(name);
+      pos = close + 2;
+    }
+    literals.add(template.substring(pos).getBytes(StandardCharsets.UTF_8));
+    return new BodyTemplate(literals.toArray(new byte[0][]), names.toArray(new String[0]));
+  }
+
+  Set<String> variables() {
+    return variables;
+  }
+
+  ChatBody render(Map<String, String> variables) {
+    String[] values = new String[names.length];
+    int size = literalBytes;
+    for (int i = 0; i < names.length; i++) {
+      String value = variables.get(names[i]);
+      if (value == null) {
+        throw new IllegalArgumentException("Missing template variable: " + names[i]);
+      }
+      values[i] = value;
+      size += escapedLength(value);
+    }
+
+    byte[] out = new byte[size];
+    int pos = 0;
+    for (int i = 0; i < names.length; i++) {
+      System.arraycopy(literals[i], 0, out, pos, literals[i].length);
+      pos += literals[i].length;
+      pos = writeEscaped(values[i], out, pos);
+    }
+    byte[] last = literals[names.length];
+    System.arraycopy(last, 0, out, pos, last.length);
+    return ChatBody.wrap(ByteBuffer.wrap(out));
+  }
+
+  // ---------- JSON string escaping straight to UTF-8 ----------
+
+  private static int escapedLength(String s) {
+    int n = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        n += c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f' ? 2
+            : c < 0x20 ? 6 : 1;
+      } else if (c < 0x800) {
+        n += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+        n += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        n += 6; // lone surrogate: written as an escape sequence
+      } else {
+        n += 3;
+      }
+    }
+    return n;
+  }
+
+  private static int writeEscaped(String s, byte[] out, int pos) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        switch (c) {
+          case '"' -> { out[pos++] = '\\'; out[pos++] = '"'; }
+          case '\\' -> { out[pos++] = '\\'; out[pos++] = '\\'; }
+          case '\n' -> { out[pos++] = '\\'; out[pos++] = 'n'; }
+          case '\r' -> { out[pos++] = '\\'; out[pos++] = 'r'; }
+          case '\t' -> { out[pos++] = '\\'; out[pos++] = 't'; }
+          case '\b' -> { out[pos++] = '\\'; out[pos++] = 'b'; }
+          case '\f' -> { out[pos++] = '\\'; out[pos++] = 'f'; }
+          default -> {
+            if (c < 0x20) pos = writeUnicodeEscape(c, out, pos);
+            else out[pos++] = (byte) c;
+          }
+        }
+      } else if (c < 0x800) {
+        out[pos++] = (byte) (0xC0 | (c >> 6));
+        out[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, s.charAt(++i));
+        out[pos++] = (byte) (0xF0 | (cp >> 18));
+        out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        out[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        pos = writeUnicodeEscape(c, out, pos);
+      } else {
+        out[pos++] = (byte) (0xE0 | (c >> 12));
+        out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        out[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return pos;
+  }
+
+  private static int writeUnicodeEscape(char c, byte[] out, int pos) {
+    out[pos++] = '\\';
+    out[pos++] = 'u';
+    out[pos++] = HEX[(c >> 12) & 0xF];
+    out[pos++] = HEX[(c >> 8) & 0xF];
+    out[pos++] = HEX[(c >> 4) & 0xF];
+    out[pos++] = HEX[c & 0xF];
+    return pos;
+  }
+}
@@ -0,0 +1,111 @@
+package com.example.demoapp;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams a JSONL file of request bodies (or template variables) through {@link LlmClient}, at most {@code concurrency}
+ * calls in flight. Lines are pulled from the file only as calls complete (flatMap demand), so
+ * the file is never held in memory.
+ */
+@Component
+public class BulkRunner {
+
+  /**
+   * Outcome of a bulk run; latencies are per completed call, in microseconds. {@code cancelled}
+   * counts calls cut short by interrupting the run, which only the virtual-thread runner reports.
+   */
+  public record Summary(long succeeded, long failed, long cancelled, long elapsedNanos, Histogram latencies) {
+
+    public Summary(long succeeded, long failed, long elapsedNanos, Histogram latencies) {
+      this(succeeded, failed, 0, elapsedNanos, latencies);
+    }
+
+    public double throughputPerSecond() {
+      long total = succeeded + failed;
+      return elapsedNanos > 0 ? total / (elapsedNanos / 1e9) : 0;
+    }
+
+    public void print() {
+      System.out.printf("Bulk run: %d ok, %d failed%s in %.1f s (%.1f req/s)%n",
+          succeeded, failed, cancelled > 0 ? ", " + cancelled + " cancelled" : "",
+          elapsedNanos / 1e9, throughputPerSecond());
+      System.out.printf("Latency ms: p50=%.1f p95=%.1f p99=%.1f max=%.1f%n",
+          percentileMillis(50), percentileMillis(95), percentileMillis(99),
+          latencies.getMaxValue() / 1000.0);
+    }
+
+    private double percentileMillis(double p) {
+      return latencies.getValueAtPercentile(p) / 1000.0;
+    }
+  }
+
+  private final LlmClient llmClient;
+  private final BodySource bodySource;
+
+  public BulkRunner(LlmClient llmClient, BodySource bodySource) {
+    this.llmClient = llmClient;
+    this.bodySource = bodySource;
+  }
+
+  public Mono<Summary> run(Path file, int concurrency) {
+    return Mono.defer(() -> {
+      Histogram latencies = new ConcurrentHistogram(3);
+      AtomicLong succeeded = new AtomicLong();
+      AtomicLong failed = new AtomicLong();
+      long start = System.nanoTime();
+
+      return lines(file)
+          .filter(StringUtils::hasText)
+          .flatMap(body -> timedCall(body, latencies, succeeded, failed), Math.max(1, concurrency))
+          .then(Mono.fromSupplier(() ->
+              new Summary(succeeded.get(), failed.get(), System.nanoTime() - start, latencies)));
+    });
+  }
+
+  private Mono<String> timedCall(String line, Histogram latencies, AtomicLong succeeded, AtomicLong failed) {
+    return Mono.defer(() -> {
+      long start = System.nanoTime();
+      // In template mode a line holds the variables, otherwise it is the whole body
+      Mono<String> call = bodySource.isTemplated()
+          ? Mono.fromCallable(() -> bodySource.render(line)).flatMap(llmClient::chat)
+          : llmClient.chat(line);
+      return call
+          .doOnSuccess(r -> succeeded.incrementAndGet())
+          .doOnError(err -> failed.incrementAndGet())
+          .doFinally(sig -> latencies.recordValue(
+              TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)))
+          // One failed call should not end the run
+          .onErrorResume(err -> Mono.empty());
+    });
+  }
+
+  // Reads lazily on boundedElastic; the reader is closed on completion, error or cancel
+  private static Flux<String> lines(Path file) {
+    return Flux.using(
+            () -> Files.newBufferedReader(file, StandardCharsets.UTF_8),
+            reader -> Flux.fromStream(reader.lines()),
+            BulkRunner::closeQuietly)
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  private static void closeQuietly(BufferedReader reader) {
+    try {
+      reader.close();
+    } catch (IOException ignored) {}
+  }
+}
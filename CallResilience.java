@@ -0,0 +1,280 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.Span;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Resilience stage for idempotent, non-streaming calls ({@code app.resilience.*}): a per-attempt
+ * timeout, a hedged duplicate once an attempt runs past the recent p95, and retries on 429, 5xx,
+ * connection errors and timeouts with jittered backoff that honours {@code Retry-After}.
+ *
+ * <p>Hedges and retries draw from one {@link RetryBudget}, so extra load stays a fixed share of
+ * the request rate however the upstream fails. The budget is per instance; since every instance
+ * applies the same ratio, it bounds the cluster-wide total too. Every hedge and retry is an
+ * event on the caller's {@code chat} span.
+ */
+@Component
+public class CallResilience {
+
+  private static final AttributeKey<Long> ATTEMPT = AttributeKey.longKey("llm.retry.attempt");
+  private static final AttributeKey<String> REASON = AttributeKey.stringKey("llm.retry.reason");
+  private static final AttributeKey<Double> DELAY_MS = AttributeKey.doubleKey("llm.retry.delay_ms");
+  private static final AttributeKey<Double> HEDGE_DELAY_MS = AttributeKey.doubleKey("llm.hedge.delay_ms");
+  private static final AttributeKey<String> KIND = AttributeKey.stringKey("kind");
+
+  private static final Attributes RETRY = Attributes.of(KIND, "retry");
+  private static final Attributes HEDGE = Attributes.of(KIND, "hedge");
+
+  // Hedge delay is recomputed at most this often, from at least MIN_SAMPLES recent attempts
+  private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private static final long MIN_SAMPLES = 20;
+
+  private final AppProperties.Resilience settings;
+  private final RetryBudget budget;
+  private final LongCounter retries;
+  private final LongCounter hedges;
+  private final LongCounter denied;
+
+  // Attempt latencies (microseconds, from admission) for the hedge delay; see timed()
+  private final Recorder latencies = new Recorder(3);
+  private final AtomicLong nextRefresh = new AtomicLong(System.nanoTime() + REFRESH_NANOS);
+  private Histogram interval; // only touched by the thread that wins nextRefresh
+  private volatile long hedgeDelayNanos = -1; // -1 until there are enough samples
+
+  public CallResilience(AppProperties props, OpenTelemetry otel) {
+    this.settings = props.getResilience();
+    this.budget = new RetryBudget(settings.getBudgetRatio(), settings.getBudgetMinPerSecond());
+    Meter meter = otel.getMeter("com.example.demoapp");
+    this.retries = meter.counterBuilder("llm.retries")
+        .setDescription("Retried attempts")
+        .build();
+    this.hedges = meter.counterBuilder("llm.hedges")
+        .setDescription("Hedged duplicate attempts")
+        .build();
+    this.denied = meter.counterBuilder("llm.retry.budget_exhausted")
+        .setDescription("Retries and hedges skipped because the retry budget was empty")
+        .build();
+  }
+
+  public boolean isEnabled() {
+    return settings.isEnabled();
+  }
+
+  /**
+   * One logical call. {@code attempt} must return a fresh request per subscription; it is
+   * subscribed once per attempt, and the losing side of a hedge is cancelled. {@code admit} wraps
+   * each attempt in whatever must grant it first (the {@link LlmLimiter} permit); the attempt
+   * timeout runs inside it, so queueing does not count and the limiter sees the timeout.
+   */
+  public Mono<String> execute(Span span, UnaryOperator<Mono<String>> admit, Supplier<Mono<String>> attempt) {
+    if (!settings.isEnabled()) return admit.apply(Mono.defer(attempt));
+    return Mono.defer(() -> {
+      budget.deposit();
+      AtomicInteger attempts = new AtomicInteger();
+      return hedged(span, admit, attempt, attempts)
+          .retryWhen(Retry.from(signals -> signals.concatMap(signal ->
+              retryDelay(span, signal.failure(), signal.totalRetries() + 1))))
+          .doFinally(sig -> span.setAttribute("llm.attempts", attempts.get()));
+    });
+  }
+
+  // ---------- hedging ----------
+
+  private Mono<String> hedged(Span span, UnaryOperator<Mono<String>> admit,
+                              Supplier<Mono<String>> attempt, AtomicInteger attempts) {
+    return Mono.defer(() -> {
+      long delay = settings.isHedge() ? hedgeDelay() : -1;
+      if (delay < 0) return timed(admit, attempt, attempts);
+
+      // A primary that fails before the hedge is due is retried instead of hedged
+      Sinks.One<Boolean> primaryFailed = Sinks.one();
+      Mono<String> primary = timed(admit, attempt, attempts)
+          .doOnError(err -> primaryFailed.tryEmitValue(true));
+      Mono<String> hedge = Mono.delay(Duration.ofNanos(delay))
+          .takeUntilOther(primaryFailed.asMono())
+          .flatMap(tick -> {
+            if (!budget.tryWithdraw()) {
+              denied.add(1, HEDGE);
+              return Mono.<String>empty();
+            }
+            hedges.add(1);
+            span.addEvent("llm.hedge", Attributes.of(HEDGE_DELAY_MS, delay / 1_000_000.0));
+            return timed(admit, attempt, attempts).doOnNext(resp -> span.addEvent("llm.hedge.won"));
+          });
+      return Mono.firstWithValue(primary, hedge)
+          .onErrorMap(NoSuchElementException.class, CallResilience::firstError);
+    });
+  }
+
+  private Mono<String> timed(UnaryOperator<Mono<String>> admit, Supplier<Mono<String>> attempt,
+                             AtomicInteger attempts) {
+    return admit.apply(Mono.defer(() -> {
+      attempts.incrementAndGet();
+      long start = System.nanoTime();
+      // Timed-out and cancelled attempts (hedge losers) are the slow tail; leaving them out would
+      // pull the percentile down, so they count as at least as long as they ran. Other errors are
+      // mostly quick rejections and are left out.
+      return attempt.get()
+          .timeout(settings.getAttemptTimeout())
+          .doOnSuccess(resp -> recordLatency(start))
+          .doOnError(TimeoutException.class, err -> recordLatency(start))
+          .doOnCancel(() -> recordLatency(start));
+    }));
+  }
+
+  private void recordLatency(long startNanos) {
+    latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+  }
+
+  private long hedgeDelay() {
+    long now = System.nanoTime();
+    long next = nextRefresh.get();
+    if (now - next >= 0 && nextRefresh.compareAndSet(next, now + REFRESH_NANOS)) {
+      interval = latencies.getIntervalHistogram(interval);
+      // A quiet interval keeps the previous delay
+      if (interval.getTotalCount() >= MIN_SAMPLES) {
+        long p = TimeUnit.MICROSECONDS.toNanos(interval.getValueAtPercentile(settings.getHedgePercentile()));
+        hedgeDelayNanos = Math.max(p, settings.getHedgeMinDelay().toNanos());
+      }
+    }
+    return hedgeDelayNanos;
+  }
+
+  // firstWithValue reports "every source failed" as NoSuchElementException; retries need the real error
+  private static Throwable firstError(NoSuchElementException e) {
+    List<Throwable> errors = new ArrayList<>();
+    if (e.getCause() != null) errors.addAll(Exceptions.unwrapMultiple(e.getCause()));
+    errors.addAll(List.of(e.getSuppressed()));
+    return errors.isEmpty() ? e : errors.get(0);
+  }
+
+  // ---------- retries ----------
+
+  private Mono<Long> retryDelay(Span span, Throwable err, long retry) {
+    String reason = reason(err);
+    if (reason == null || retry >= settings.getMaxAttempts()) return Mono.error(err);
+
+    Duration retryAfter = retryAfter(err);
+    Duration delay = retryAfter != null ? retryAfter : backoff(retry);
+    if (delay.compareTo(settings.getMaxBackoff()) > 0) {
+      // The server asked for a longer pause than we are willing to hold the caller for
+      return Mono.error(err);
+    }
+    if (!budget.tryWithdraw()) {
+      denied.add(1, RETRY);
+      span.addEvent("llm.retry.budget_exhausted", Attributes.of(REASON, reason));
+      return Mono.error(err);
+    }
+    retries.add(1, RETRY);
+    span.addEvent("llm.retry", Attributes.of(
+        ATTEMPT, retry + 1, REASON, reason, DELAY_MS, delay.toNanos() / 1_000_000.0));
+    return Mono.delay(delay);
+  }
+
+  // Null when the error is not worth retrying
+  private static String reason(Throwable err) {
+    if (err instanceof WebClientResponseException e) {
+      int status = e.getStatusCode().value();
+      return status == 429 || status >= 500 ? String.valueOf(status) : null;
+    }
+    if (err instanceof WebClientRequestException) return "connection";
+    if (err instanceof TimeoutException) return "timeout";
+    // LlmLimiter.RejectedException: our own queue is full or slow; a retry only adds to it
+    return null;
+  }
+
+  // Full jitter: uniform in [0, min(maxBackoff, backoff * 2^(retry - 1))]
+  private Duration backoff(long retry) {
+    long base = settings.getBackoff().toNanos();
+    long cap = Math.min(settings.getMaxBackoff().toNanos(), base << Math.min(retry - 1, 20));
+    return Duration.ofNanos(ThreadLocalRandom.current().nextLong(cap + 1));
+  }
+
+  // Retry-After is either delta-seconds or an HTTP date
+  private static Duration retryAfter(Throwable err) {
+    if (!(err instanceof WebClientResponseException e)) return null;
+    String value = e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+    if (value == null || value.isBlank()) return null;
+    try {
+      return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+    } catch (NumberFormatException notSeconds) {
+      try {
+        Duration d = Duration.between(ZonedDateTime.now(),
+            ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+        return d.isNegative() ? Duration.ZERO : d;
+      } catch (DateTimeParseException unparseable) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Token bucket shared by retries and hedges: every call deposits {@code ratio} tokens, every
+   * retry or hedge takes one, and {@code minPerSecond} tokens trickle in so a quiet service can
+   * still retry.
+   */
+  static final class RetryBudget {
+    private final double ratio;
+    private final double minPerNano;
+    private final double cap;
+    private double tokens;
+    private long lastNanos = System.nanoTime();
+
+    RetryBudget(double ratio, int minPerSecond) {
+      this.ratio = ratio;
+      this.minPerNano = minPerSecond / 1e9;
+      // Up to ten seconds of the minimum rate can be saved up, and at least ten retries
+      this.cap = Math.max(10, minPerSecond * 10.0);
+      this.tokens = cap;
+    }
+
+    synchronized void deposit() {
+      refill();
+      tokens = Math.min(cap, tokens + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+      refill();
+      if (tokens < 1) return false;
+      tokens -= 1;
+      return true;
+    }
+
+    private void refill() {
+      long now = System.nanoTime();
+      tokens = Math.min(cap, tokens + (now - lastNanos) * minPerNano);
+      lastNanos = now;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.example.demoapp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The bytes of one request body, sent as-is. Backed by a heap array or a read-only file
+ * mapping; {@link #bytes()} hands out an independent view so one body can be sent many times.
+ * Inspection and fingerprint results, and the compressed form, are cached here because they
+ * depend only on the bytes.
+ */
+public final class ChatBody {
+
+  private final ByteBuffer bytes;
+  // The heap array behind a body built from a String or byte[]; null for a file mapping
+  private final byte[] array;
+  private final int arrayOffset;
+  private volatile RequestInspector.RequestInfo info;
+  private volatile RequestFingerprint.Fingerprint fingerprint;
+  private volatile BodyCompression.Compressed compressed;
+
+  private ChatBody(ByteBuffer bytes) {
+    this.bytes = bytes.asReadOnlyBuffer();
+    this.array = bytes.hasArray() ? bytes.array() : null;
+    this.arrayOffset = bytes.hasArray() ? bytes.arrayOffset() + bytes.position() : 0;
+  }
+
+  public static ChatBody of(String json) {
+    return new ChatBody(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public static ChatBody wrap(ByteBuffer bytes) {
+    return new ChatBody(bytes);
+  }
+
+  /** A fresh view positioned at the first byte; consuming it does not affect other views. */
+  public ByteBuffer bytes() {
+    return bytes.duplicate();
+  }
+
+  public int size() {
+    return bytes.remaining();
+  }
+
+  /**
+   * The backing array for parsers that read arrays directly, or null when the body is a file
+   * mapping. The body starts at {@link #arrayOffset()}; callers must not write to it.
+   */
+  byte[] array() {
+    return array;
+  }
+
+  int arrayOffset() {
+    return arrayOffset;
+  }
+
+  /** Decodes the body; only for fallbacks that really need the text. */
+  public String asString() {
+    return StandardCharsets.UTF_8.decode(bytes()).toString();
+  }
+
+  RequestInspector.RequestInfo cachedInfo() {
+    return info;
+  }
+
+  void cacheInfo(RequestInspector.RequestInfo info) {
+    this.info = info;
+  }
+
+  RequestFingerprint.Fingerprint cachedFingerprint() {
+    return fingerprint;
+  }
+
+  void cacheFingerprint(RequestFingerprint.Fingerprint fingerprint) {
+    this.fingerprint = fingerprint;
+  }
+
+  BodyCompression.Compressed cachedCompressed() {
+    return compressed;
+  }
+
+  void cacheCompressed(BodyCompression.Compressed compressed) {
+    this.compressed = compressed;
+  }
+}
@@ -0,0 +1,126 @@
+package com.example.demoapp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.opentelemetry.api.trace.Span;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asks for compressed responses ({@code Accept-Encoding}) and decodes them chunk by chunk as
+ * they arrive, so a streamed completion is never buffered whole. Response body sizes on the wire
+ * and decoded are recorded on the caller's span (the {@code chat} span, via
+ * {@link ReactorTracing}) as {@code http.response.body.size} and
+ * {@code http.response.body.uncompressed_size}, also when the body is cancelled part way (an SSE
+ * stream stops reading at {@code [DONE]}).
+ *
+ * <p>A body that decodes to more than {@code maxResponseBytes} fails with
+ * {@link DataBufferLimitException}, as the codecs do past {@code maxInMemorySize}.
+ */
+final class DecompressingExchangeFilter implements ExchangeFilterFunction {
+
+  private static final DefaultDataBufferFactory BUFFERS = DefaultDataBufferFactory.sharedInstance;
+
+  private final String acceptEncoding = BodyCompression.acceptEncoding();
+  private final long maxResponseBytes;
+
+  DecompressingExchangeFilter(long maxResponseBytes) {
+    this.maxResponseBytes = maxResponseBytes;
+  }
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    ClientRequest compressed = request.headers().containsKey(HttpHeaders.ACCEPT_ENCODING)
+        ? request
+        : ClientRequest.from(request).header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding).build();
+    return Mono.deferContextual(view -> {
+      Span span = Span.fromContext(ReactorTracing.parent(view));
+      return next.exchange(compressed).map(response -> decode(response, span, maxResponseBytes));
+    });
+  }
+
+  private static ClientResponse decode(ClientResponse response, Span span, long maxResponseBytes) {
+    String header = response.headers().asHttpHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+    String encoding = header != null ? header.trim().toLowerCase(Locale.ROOT) : "identity";
+    AtomicLong wire = new AtomicLong();
+    AtomicLong decoded = new AtomicLong();
+    Runnable record = () -> {
+      span.setAttribute("http.response.body.size", wire.get());
+      span.setAttribute("http.response.body.uncompressed_size", decoded.get());
+    };
+
+    if (!BodyCompression.canDecode(encoding)) {
+      // Identity, or an encoding we did not ask for: passed through, only counted
+      return response.mutate()
+          .body(body -> body
+              .doOnNext(buf -> {
+                wire.addAndGet(buf.readableByteCount());
+                decoded.addAndGet(buf.readableByteCount());
+              })
+              .doFinally(sig -> record.run()))
+          .build();
+    }
+    int maxAllocation = (int) Math.min(maxResponseBytes, Integer.MAX_VALUE);
+    return response.mutate()
+        .headers(headers -> {
+          headers.remove(HttpHeaders.CONTENT_ENCODING);
+          headers.remove(HttpHeaders.CONTENT_LENGTH);
+        })
+        .body(body -> Flux.using(
+            () -> new EmbeddedChannel(BodyCompression.decoder(encoding, maxAllocation)),
+            channel -> body
+                .concatMapIterable(buf -> {
+                  wire.addAndGet(buf.readableByteCount());
+                  channel.writeInbound(Unpooled.wrappedBuffer(copy(buf)));
+                  return drain(channel, decoded, maxResponseBytes);
+                })
+                .concatWith(Flux.defer(() -> {
+                  channel.finish();
+                  return Flux.fromIterable(drain(channel, decoded, maxResponseBytes));
+                }))
+                .doFinally(sig -> record.run()),
+            EmbeddedChannel::finishAndReleaseAll))
+        .build();
+  }
+
+  private static byte[] copy(DataBuffer buf) {
+    byte[] bytes = new byte[buf.readableByteCount()];
+    buf.read(bytes);
+    DataBufferUtils.release(buf);
+    return bytes;
+  }
+
+  // Decoded output so far, as heap buffers the codecs downstream can hold on to. ZstdDecoder has
+  // no allocation cap, so one wire chunk may inflate past the limit before this sees it.
+  private static List<DataBuffer> drain(EmbeddedChannel channel, AtomicLong decoded, long maxResponseBytes) {
+    List<DataBuffer> out = new ArrayList<>(2);
+    for (ByteBuf chunk; (chunk = channel.readInbound()) != null; ) {
+      byte[] bytes = new byte[chunk.readableBytes()];
+      chunk.readBytes(bytes);
+      chunk.release();
+      if (decoded.addAndGet(bytes.length) > maxResponseBytes) {
+        throw new DataBufferLimitException(
+            "Decoded response body exceeds " + maxResponseBytes + " bytes (app.compression.max-response-bytes)");
+      }
+      out.add(BUFFERS.wrap(bytes));
+    }
+    return out;
+  }
+}
@@ -17,15 +17,15 @@ import java.util.Map;
 import java.util.UUID;
 
 @SpringBootApplication
-@EnableConfigurationProperties(AppProperties.class)
+@EnableConfigurationProperties({AppProperties.class, OtlpExportProperties.class})
 public class DemoappApplication implements CommandLineRunner {
 
     private final AppProperties props;
     private final WebClient webClient;
 
-    public DemoappApplication(AppProperties props) {
+    public DemoappApplication(AppProperties props, WebClient webClient) {
         this.props = props;
-        this.webClient = WebClient.builder().build();
+        this.webClient = webClient;
     }
 
     public static void main(String[] args) {
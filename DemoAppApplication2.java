@@ -10,9 +10,6 @@ import org.springframework.http.MediaType;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
@@ -26,18 +23,25 @@ import java.util.Map;
 import java.util.UUID;
 
 @SpringBootApplication
-@EnableConfigurationProperties(AppProperties.class)
+@EnableConfigurationProperties({AppProperties.class, OtlpExportProperties.class})
 public class DemoappApplication implements CommandLineRunner {
 
   private final AppProperties props;
   private final WebClient webClient;
   private final Tracer tracer;
-  private final ObjectMapper mapper = new ObjectMapper();
+  private final RequestInspector inspector;
+  private final ResponseInspector responseInspector;
+  private final SpanAttributeBudget attributeBudget;
 
-  public DemoappApplication(AppProperties props, Tracer tracer) {
+  public DemoappApplication(AppProperties props, WebClient webClient, Tracer tracer,
+                            RequestInspector inspector, ResponseInspector responseInspector,
+                            SpanAttributeBudget attributeBudget) {
     this.props = props;
     this.tracer = tracer;
-    this.webClient = WebClient.builder().build();
+    this.inspector = inspector;
+    this.responseInspector = responseInspector;
+    this.attributeBudget = attributeBudget;
+    this.webClient = webClient;
   }
 
   public static void main(String[] args) {
@@ -75,12 +79,15 @@ public class DemoappApplication implements CommandLineRunner {
     }
 
     // -------- OpenInference + OTEL instrumentation starts here --------
-    // Extract model/provider/prompt from your body/headers (best-effort).
-    String model = extractModel(jsonBody);
-    String provider = guessProviderFromHeaders(extras); // or hardcode your provider name
-    String userPrompt = extractPrompt(jsonBody);        // falls back to body if not found
+    // Extract model/provider/prompt from your body/headers (best-effort, one pass).
+    RequestInspector.RequestInfo info = inspector.inspect(jsonBody, extras);
+    String model = info.model();
+    String provider = info.provider();     // header hint, then body "provider", else "internal"
+    String userPrompt = info.prompt();     // falls back to body if not found
 
     Span span = tracer.spanBuilder("chat").startSpan();
+    // Prompt/output are cut to UTF-8 byte budgets (skipped when the span is not recording)
+    SpanAttributeBudget.Writer attrs = attributeBudget.forSpan(span);
     try (Scope s = span.makeCurrent()) {
       // Required OI bits
       span.setAttribute("openinference.span.kind", "LLM");
@@ -92,7 +99,7 @@ public class DemoappApplication implements CommandLineRunner {
 
       // Structured input message
       span.setAttribute("llm.input_messages.0.message.role", "user");
-      span.setAttribute("llm.input_messages.0.message.content", truncate(userPrompt, 4000));
+      attrs.set("llm.input_messages.0.message.content", userPrompt);
 
       // Make the call (blocking; matches your current style)
       String response = req
@@ -100,12 +107,8 @@ public class DemoappApplication implements CommandLineRunner {
           .retrieve()
           .bodyToMono(String.class)
           .doOnNext(resp -> {
-            // Structured output message
-            span.setAttribute("llm.output_messages.0.message.role", "assistant");
-            span.setAttribute("llm.output_messages.0.message.content", truncate(resp, 4000));
-
-            // If your API returns usage (tokens/cost), you can parse and set:
-            // setUsageFromResponse(span, resp);
+            // Output message, openinference.output_value and llm.usage.* in one pass
+            responseInspector.applyTo(attrs, resp);
             span.setStatus(StatusCode.OK);
           })
           .doOnError(err -> {
@@ -129,64 +132,4 @@ public class DemoappApplication implements CommandLineRunner {
     }
     return inlineBody;
   }
-
-  // --- Helpers to extract common LLM fields from your JSON body ---
-
-  private String extractModel(String json) {
-    try {
-      JsonNode root = mapper.readTree(json);
-      if (root.hasNonNull("model")) return root.get("model").asText();
-      if (root.has("parameters") && root.get("parameters").hasNonNull("model")) {
-        return root.get("parameters").get("model").asText();
-      }
-    } catch (Exception ignored) {}
-    return "unknown";
-  }
-
-  private String extractPrompt(String json) {
-    try {
-      JsonNode root = mapper.readTree(json);
-      // If your schema is "messages": [ {role, content}, ... ]
-      if (root.has("messages") && root.get("messages").isArray()) {
-        for (JsonNode m : root.get("messages")) {
-          if ("user".equals(m.path("role").asText())) {
-            return m.path("content").asText("");
-          }
-        }
-      }
-      // Many APIs also support "prompt": "..."
-      if (root.hasNonNull("prompt")) return root.get("prompt").asText();
-    } catch (Exception ignored) {}
-    // Fallback: store the whole JSON if we can’t find a user content field
-    return json;
-  }
-
-  private String guessProviderFromHeaders(Map<String,String> headers) {
-    if (headers == null) return "internal";
-    // Example: use a vendor id header if you pass one; otherwise "internal"
-    if (headers.containsKey("x-wf-client-id")) return "wf";
-    if (headers.containsKey("x-provider")) return headers.get("x-provider");
-    return "internal";
-  }
-
-  private static String truncate(String s, int max) {
-    if (s == null) return null;
-    return s.length() <= max ? s : s.substring(0, max);
-  }
-
-  // Example parser for usage/cost if your API returns it (call from doOnNext above)
-  /*
-  private void setUsageFromResponse(Span span, String respJson) {
-    try {
-      JsonNode r = mapper.readTree(respJson);
-      JsonNode usage = r.path("usage");
-      if (usage.isObject()) {
-        if (usage.has("prompt_tokens")) span.setAttribute("llm.usage.input_tokens", usage.get("prompt_tokens").asLong());
-        if (usage.has("completion_tokens")) span.setAttribute("llm.usage.output_tokens", usage.get("completion_tokens").asLong());
-        if (usage.has("total_tokens")) span.setAttribute("llm.usage.total_tokens", usage.get("total_tokens").asLong());
-      }
-      // If you have cost fields, you can also set: span.setAttribute("llm.response.cost", <value>);
-    } catch (Exception ignored) {}
-  }
-  */
 }
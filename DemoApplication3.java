@@ -10,13 +10,10 @@ import org.springframework.http.MediaType;
 import org.springframework.util.StringUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
-import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.Context;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
@@ -28,18 +25,25 @@ import java.util.Map;
 import java.util.UUID;
 
 @SpringBootApplication
-@EnableConfigurationProperties(AppProperties.class)
+@EnableConfigurationProperties({AppProperties.class, OtlpExportProperties.class})
 public class DemoappApplication implements CommandLineRunner {
 
   private final AppProperties props;
   private final WebClient webClient;
   private final Tracer tracer;
-  private final ObjectMapper mapper = new ObjectMapper();
+  private final RequestInspector inspector;
+  private final ResponseInspector responseInspector;
+  private final SpanAttributeBudget attributeBudget;
 
-  public DemoappApplication(AppProperties props, Tracer tracer) {
+  public DemoappApplication(AppProperties props, WebClient webClient, Tracer tracer,
+                            RequestInspector inspector, ResponseInspector responseInspector,
+                            SpanAttributeBudget attributeBudget) {
     this.props = props;
     this.tracer = tracer;
-    this.webClient = WebClient.builder().build();
+    this.inspector = inspector;
+    this.responseInspector = responseInspector;
+    this.attributeBudget = attributeBudget;
+    this.webClient = webClient;
   }
 
   public static void main(String[] args) {
@@ -57,9 +61,10 @@ public class DemoappApplication implements CommandLineRunner {
         .subscribeOn(Schedulers.boundedElastic())
         .flatMap(jsonBody -> {
           // Extract useful LLM metadata for tracing
-          String model = extractModel(jsonBody);
-          String provider = guessProviderFromHeaders(props.getExtraHeaders());
-          String userPrompt = extractPrompt(jsonBody);
+          RequestInspector.RequestInfo info = inspector.inspect(jsonBody, props.getExtraHeaders());
+          String model = info.model();
+          String provider = info.provider();
+          String userPrompt = info.prompt();
           String requestId = UUID.randomUUID().toString();
 
           // Build request
@@ -84,7 +89,7 @@ public class DemoappApplication implements CommandLineRunner {
 
           // Start span
           Span span = tracer.spanBuilder("chat").startSpan();
-          Scope scope = span.makeCurrent();
+          SpanAttributeBudget.Writer attrs = attributeBudget.forSpan(span);
 
           return req
               .bodyValue(jsonBody)
@@ -99,29 +104,24 @@ public class DemoappApplication implements CommandLineRunner {
 
                 // Structured input message
                 span.setAttribute("llm.input_messages.0.message.role", "user");
-                span.setAttribute("llm.input_messages.0.message.content", truncate(userPrompt, 4000));
+                attrs.set("llm.input_messages.0.message.content", userPrompt);
               })
               .doOnNext(resp -> {
-                // Structured output message
-                span.setAttribute("llm.output_messages.0.message.role", "assistant");
-                span.setAttribute("llm.output_messages.0.message.content", truncate(resp, 4000));
+                // Output message, openinference.output_value and llm.usage.* in one pass
+                responseInspector.applyTo(attrs, resp);
                 span.setStatus(StatusCode.OK);
 
                 System.out.println("Response:");
                 System.out.println(resp);
-
-                // Optional: parse usage/cost if your API returns it
-                // setUsageFromResponse(span, resp);
               })
               .doOnError(err -> {
                 span.recordException(err);
                 span.setStatus(StatusCode.ERROR);
                 System.err.println("Request failed: " + err.getMessage());
               })
-              .doFinally(sig -> {
-                scope.close();
-                span.end();
-              });
+              .doFinally(sig -> span.end())
+              // Parent for the HTTP client span; a thread-local Scope would leak across the event loop
+              .contextWrite(ReactorTracing.with(Context.current().with(span)));
         })
         .subscribe(
             r -> { /* handled in doOnNext */ },
@@ -142,60 +142,4 @@ public class DemoappApplication implements CommandLineRunner {
     }
     return inlineBody;
   }
-
-  private String extractModel(String json) {
-    try {
-      JsonNode root = mapper.readTree(json);
-      if (root.hasNonNull("model")) return root.get("model").asText();
-      if (root.has("parameters") && root.get("parameters").hasNonNull("model")) {
-        return root.get("parameters").get("model").asText();
-      }
-    } catch (Exception ignored) {}
-    return "unknown";
-  }
-
-  private String extractPrompt(String json) {
-    try {
-      JsonNode root = mapper.readTree(json);
-      // Common schema: messages: [ {role, content}, ... ]
-      if (root.has("messages") && root.get("messages").isArray()) {
-        for (JsonNode m : root.get("messages")) {
-          if ("user".equals(m.path("role").asText())) {
-            return m.path("content").asText("");
-          }
-        }
-      }
-      // Or prompt: "..."
-      if (root.hasNonNull("prompt")) return root.get("prompt").asText();
-    } catch (Exception ignored) {}
-    // Fallback: store whole JSON if no user content found
-    return json;
-  }
-
-  private String guessProviderFromHeaders(Map<String, String> headers) {
-    if (headers == null) return "internal";
-    if (headers.containsKey("x-wf-client-id")) return "wf";
-    if (headers.containsKey("x-provider")) return headers.get("x-provider");
-    return "internal";
-  }
-
-  private static String truncate(String s, int max) {
-    if (s == null) return null;
-    return s.length() <= max ? s : s.substring(0, max);
-  }
-
-  // Example usage parser (optional)
-  /*
-  private void setUsageFromResponse(Span span, String respJson) {
-    try {
-      JsonNode r = mapper.readTree(respJson);
-      JsonNode usage = r.path("usage");
-      if (usage.isObject()) {
-        if (usage.has("prompt_tokens"))   span.setAttribute("llm.usage.input_tokens",  usage.get("prompt_tokens").asLong());
-        if (usage.has("completion_tokens")) span.setAttribute("llm.usage.output_tokens", usage.get("completion_tokens").asLong());
-        if (usage.has("total_tokens"))    span.setAttribute("llm.usage.total_tokens",   usage.get("total_tokens").asLong());
-      }
-    } catch (Exception ignored) {}
-  }
-  */
 }
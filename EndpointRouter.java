@@ -0,0 +1,272 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.Span;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Spreads LLM calls over {@code app.endpoints} (or the single {@code app.url}).
+ *
+ * <p>Each attempt picks the better of two weighted random endpoints (power of two choices),
+ * scored by outstanding calls per unit of weight, or with {@code app.routing.strategy=ewma} by
+ * a peak-sensitive latency EWMA times outstanding calls. Under ewma a failed attempt counts as
+ * twice the slowest endpoint's latency, so an endpoint that fails fast does not look fast. Two
+ * choices rather than the global best keeps concurrent pickers from herding onto the same
+ * endpoint.
+ *
+ * <p>An endpoint that fails {@code ejectAfterFailures} times in a row is left out for
+ * {@code ejectionTime}, doubling with each ejection in a row, as long as no more than
+ * {@code maxEjectedPercent} of the endpoints are out. The {@code chat} span records the
+ * endpoint that served it as {@code llm.endpoint}.
+ */
+@Component
+public class EndpointRouter {
+
+  private static final AttributeKey<String> ENDPOINT = AttributeKey.stringKey("llm.endpoint");
+  private static final Log LOG = LogFactory.getLog(EndpointRouter.class);
+
+  private final List<Endpoint> endpoints;
+  private final AppProperties.Routing routing;
+  private final boolean ewma;
+  private final LongCounter ejections;
+
+  public EndpointRouter(AppProperties props, OpenTelemetry otel) {
+    this.routing = props.getRouting();
+    this.ewma = "ewma".equals(routing.getStrategy());
+    if (!ewma && !"least-outstanding".equals(routing.getStrategy())) {
+      throw new IllegalArgumentException("app.routing.strategy must be least-outstanding or ewma");
+    }
+    this.endpoints = endpoints(props);
+
+    Meter meter = otel.getMeter("com.example.demoapp");
+    this.ejections = meter.counterBuilder("llm.endpoint.ejections")
+        .setDescription("Endpoints taken out of rotation after repeated failures")
+        .build();
+    meter.upDownCounterBuilder("llm.endpoint.outstanding")
+        .setDescription("Calls in flight per endpoint")
+        .buildWithCallback(m -> endpoints.forEach(e -> m.record(e.outstanding.get(), e.attributes)));
+  }
+
+  /** Runs one attempt against the chosen endpoint's URL. */
+  public <T> Mono<T> route(Span span, Function<String, Mono<T>> attempt) {
+    return Mono.defer(() -> {
+      Lease lease = pick();
+      return attempt.apply(lease.endpoint.url)
+          .doOnNext(v -> lease.succeeded(span, true))
+          .doOnError(err -> lease.failed(span, err))
+          .doFinally(sig -> lease.cancelled());
+    });
+  }
+
+  /** Streaming form of {@link #route(Span, Function)}; latency is taken at the first element. */
+  public <T> Flux<T> routeMany(Span span, Function<String, Flux<T>> attempt) {
+    return Flux.defer(() -> {
+      Lease lease = pick();
+      AtomicBoolean first = new AtomicBoolean(true);
+      return attempt.apply(lease.endpoint.url)
+          .doOnNext(v -> {
+            if (first.compareAndSet(true, false)) lease.firstElement();
+          })
+          .doOnComplete(() -> lease.succeeded(span, false))
+          .doOnError(err -> lease.failed(span, err))
+          .doFinally(sig -> lease.cancelled());
+    });
+  }
+
+  // ---------- selection ----------
+
+  private Lease pick() {
+    if (endpoints.isEmpty()) {
+      throw new IllegalStateException("app.url or app.endpoints is required");
+    }
+    long now = System.nanoTime();
+    List<Endpoint> available = new ArrayList<>(endpoints.size());
+    int totalWeight = 0;
+    for (Endpoint e : endpoints) {
+      if (!e.isEjected(now)) {
+        available.add(e);
+        totalWeight += e.weight;
+      }
+    }
+    // Everything ejected: better to try than to fail outright
+    if (available.isEmpty()) {
+      available = endpoints;
+      totalWeight = endpoints.stream().mapToInt(e -> e.weight).sum();
+    }
+
+    Endpoint a = weighted(available, totalWeight);
+    Endpoint b = weighted(available, totalWeight);
+    Endpoint chosen = a == b || score(a) <= score(b) ? a : b;
+    chosen.outstanding.incrementAndGet();
+    return new Lease(chosen, now);
+  }
+
+  private static Endpoint weighted(List<Endpoint> candidates, int totalWeight) {
+    if (candidates.size() == 1) return candidates.get(0);
+    int r = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (Endpoint e : candidates) {
+      r -= e.weight;
+      if (r < 0) return e;
+    }
+    return candidates.get(candidates.size() - 1);
+  }
+
+  private double score(Endpoint e) {
+    double load = (e.outstanding.get() + 1) / (double) e.weight;
+    return ewma ? load * e.latency() : load;
+  }
+
+  // ---------- outcomes ----------
+
+  private static boolean isFailure(Throwable err) {
+    if (err instanceof WebClientResponseException e) {
+      int status = e.getStatusCode().value();
+      return status == 429 || status >= 500;
+    }
+    return err instanceof WebClientRequestException || err instanceof TimeoutException;
+  }
+
+  // Twice the slowest endpoint (or this attempt, if slower): enough to lose to any healthy one
+  private long failurePenalty(long rttNanos) {
+    double slowest = rttNanos;
+    for (Endpoint e : endpoints) slowest = Math.max(slowest, e.latency());
+    return (long) (slowest * 2);
+  }
+
+  private void recordFailure(Endpoint e, long now) {
+    if (e.consecutiveFailures.incrementAndGet() < routing.getEjectAfterFailures()) return;
+    long time;
+    synchronized (this) {
+      if (e.isEjected(now)) return;
+      long ejected = endpoints.stream().filter(x -> x.isEjected(now)).count();
+      if ((ejected + 1) * 100 > (long) routing.getMaxEjectedPercent() * endpoints.size()) return;
+      long base = routing.getEjectionTime().toNanos();
+      time = Math.min(routing.getMaxEjectionTime().toNanos(), base << Math.min(e.ejectionsInARow, 10));
+      e.ejectedUntilNanos = now + time;
+      e.ejectionsInARow++;
+      e.consecutiveFailures.set(0);
+    }
+    ejections.add(1, e.attributes);
+    e.ejectionLog.warn("LLM endpoint %s ejected for %d s after repeated failures", e.name, time / 1_000_000_000L);
+  }
+
+  /** One attempt's hold on an endpoint; released exactly once. */
+  private final class Lease {
+    final Endpoint endpoint;
+    final long startNanos;
+    final AtomicBoolean released = new AtomicBoolean();
+
+    Lease(Endpoint endpoint, long startNanos) {
+      this.endpoint = endpoint;
+      this.startNanos = startNanos;
+    }
+
+    void firstElement() {
+      endpoint.observe(System.nanoTime() - startNanos, routing.getEwmaDecay().toNanos());
+    }
+
+    void succeeded(Span span, boolean observe) {
+      if (!released.compareAndSet(false, true)) return;
+      endpoint.outstanding.decrementAndGet();
+      if (observe) endpoint.observe(System.nanoTime() - startNanos, routing.getEwmaDecay().toNanos());
+      endpoint.consecutiveFailures.set(0);
+      endpoint.ejectionsInARow = 0;
+      span.setAttribute(ENDPOINT, endpoint.name);
+    }
+
+    void failed(Span span, Throwable err) {
+      if (!released.compareAndSet(false, true)) return;
+      endpoint.outstanding.decrementAndGet();
+      span.setAttribute(ENDPOINT, endpoint.name);
+      if (!isFailure(err)) return;
+      long now = System.nanoTime();
+      if (ewma) endpoint.observe(failurePenalty(now - startNanos), routing.getEwmaDecay().toNanos());
+      recordFailure(endpoint, now);
+    }
+
+    void cancelled() {
+      if (released.compareAndSet(false, true)) endpoint.outstanding.decrementAndGet();
+    }
+  }
+
+  // ---------- endpoints ----------
+
+  private static final class Endpoint {
+    final String name;
+    final String url;
+    final int weight;
+    final Attributes attributes;
+    final AtomicInteger outstanding = new AtomicInteger();
+    final AtomicInteger consecutiveFailures = new AtomicInteger();
+    final RateLimitedLog ejectionLog = new RateLimitedLog(LOG, Duration.ofMinutes(1)); // a flapping endpoint
+    volatile long ejectedUntilNanos = System.nanoTime();
+    volatile int ejectionsInARow;
+
+    // Peak EWMA of latency in nanos; guarded by this
+    private double latencyNanos;
+    private long latencyUpdatedNanos = System.nanoTime();
+
+    Endpoint(String name, String url, int weight) {
+      this.name = name;
+      this.url = url;
+      this.weight = weight;
+      this.attributes = Attributes.of(ENDPOINT, name);
+    }
+
+    boolean isEjected(long now) {
+      return ejectedUntilNanos - now > 0;
+    }
+
+    // A slow response raises the estimate at once; fast ones pull it down over ewmaDecay
+    synchronized void observe(long rttNanos, long decayNanos) {
+      long now = System.nanoTime();
+      double w = Math.exp(-(now - latencyUpdatedNanos) / (double) decayNanos);
+      latencyUpdatedNanos = now;
+      latencyNanos = rttNanos > latencyNanos ? rttNanos : latencyNanos * w + rttNanos * (1 - w);
+    }
+
+    // An endpoint without samples scores as the fastest, so it gets tried; failures push it up
+    synchronized double latency() {
+      return latencyNanos;
+    }
+  }
+
+  private static List<Endpoint> endpoints(AppProperties props) {
+    List<Endpoint> result = new ArrayList<>();
+    for (AppProperties.Endpoint e : props.getEndpoints()) {
+      if (!StringUtils.hasText(e.getUrl())) {
+        throw new IllegalArgumentException("app.endpoints[n].url is required");
+      }
+      if (e.getWeight() <= 0) {
+        throw new IllegalArgumentException("app.endpoints[n].weight must be positive: " + e.getUrl());
+      }
+      result.add(new Endpoint(StringUtils.hasText(e.getName()) ? e.getName() : e.getUrl(), e.getUrl(), e.getWeight()));
+    }
+    if (result.isEmpty() && StringUtils.hasText(props.getUrl())) {
+      result.add(new Endpoint(props.getUrl(), props.getUrl(), 1));
+    }
+    return List.copyOf(result);
+  }
+}
@@ -0,0 +1,74 @@
+package com.example.demoapp;
+
+import io.netty.channel.ChannelOption;
+import io.opentelemetry.api.OpenTelemetry;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * One Reactor Netty connection pool and event loop group shared by every outbound call
+ * (LLM endpoint and token endpoint), sized through {@code app.http.*}.
+ */
+@Configuration
+public class HttpClientConfig {
+
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider connectionProvider(AppProperties props, OpenTelemetry otel) {
+    AppProperties.Http http = props.getHttp();
+    // Reactor Netty calls the supplier on every register and deregister, so it must hand out
+    // the one registrar that holds the pools
+    PoolMetricsRegistrar registrar = new PoolMetricsRegistrar(otel.getMeter("com.example.demoapp"));
+    return ConnectionProvider.builder("llm-http")
+        .maxConnections(http.getMaxConnections())
+        .pendingAcquireMaxCount(http.getPendingAcquireMaxCount())
+        .pendingAcquireTimeout(http.getPendingAcquireTimeout())
+        .maxIdleTime(http.getMaxIdleTime())
+        .maxLifeTime(http.getMaxLifeTime())
+        .evictInBackground(http.getEvictInBackground())
+        // active / idle / pending per remote address, as OTel gauges
+        .metrics(true, () -> registrar)
+        .build();
+  }
+
+  @Bean(destroyMethod = "dispose")
+  public LoopResources loopResources(AppProperties props) {
+    int threads = props.getHttp().getEventLoopThreads();
+    return LoopResources.create("llm-http", threads > 0 ? threads : LoopResources.DEFAULT_IO_WORKER_COUNT, true);
+  }
+
+  @Bean
+  public HttpClient httpClient(AppProperties props, ConnectionProvider provider, LoopResources loops) {
+    AppProperties.Http http = props.getHttp();
+    HttpClient client = HttpClient.create(provider)
+        .runOn(loops)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) http.getConnectTimeout().toMillis())
+        .option(ChannelOption.SO_KEEPALIVE, true)
+        .responseTimeout(http.getResponseTimeout());
+    if (http.isHttp2()) {
+      // Negotiated via ALPN on https URLs; falls back to HTTP/1.1
+      client = client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+    }
+    return client;
+  }
+
+  @Bean
+  public WebClient webClient(AppProperties props, HttpClient httpClient, OpenTelemetry otel) {
+    WebClient.Builder builder = WebClient.builder()
+        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        // Client span + traceparent per request, parented through the Reactor context
+        .filter(new TracingExchangeFilter(otel));
+    if (props.getCompression().isResponses()) {
+      // Accept-Encoding, streamed decoding and body sizes on the chat span
+      builder.filter(new DecompressingExchangeFilter(props.getCompression().getMaxResponseBytes()));
+    }
+    return builder.build();
+  }
+}
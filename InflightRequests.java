@@ -0,0 +1,56 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+
+import org.springframework.stereotype.Component;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Merges identical in-flight LLM calls: the first caller for a key (the leader) makes the HTTP
+ * call and every caller that arrives before it finishes shares the result. Each caller keeps its
+ * own {@code chat} span; followers link theirs to the leader's.
+ */
+@Component
+public class InflightRequests {
+
+  private static final class Inflight {
+    final SpanContext leader;
+    Mono<String> result;
+
+    Inflight(SpanContext leader) {
+      this.leader = leader;
+    }
+  }
+
+  private final Map<String, Inflight> inflight = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the shared result for {@code key}, starting {@code call} if nobody else is running
+   * it. The shared call is not cancelled when one caller goes away.
+   */
+  public Mono<String> join(String key, Span span, Supplier<Mono<String>> call) {
+    Inflight[] created = new Inflight[1];
+    Inflight entry = inflight.computeIfAbsent(key, k -> {
+      Inflight e = new Inflight(span.getSpanContext());
+      e.result = call.get()
+          .doFinally(sig -> inflight.remove(k, e))
+          .share();
+      created[0] = e;
+      return e;
+    });
+
+    if (entry == created[0]) {
+      span.setAttribute("llm.merge.role", "leader");
+    } else {
+      span.setAttribute("llm.merge.role", "follower");
+      span.addLink(entry.leader);
+    }
+    return entry.result;
+  }
+}
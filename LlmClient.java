@@ -0,0 +1,363 @@
+package com.example.demoapp;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.buffer.ByteBufAllocator;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.function.Supplier;
+
+/**
+ * The instrumented call to {@code app.url} (or one of {@code app.endpoints}): builds the request
+ * headers, sends the body and records the OpenInference {@code chat} span. Shared by the
+ * single-request run and bulk mode.
+ */
+@Service
+public class LlmClient {
+
+  private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+      new ParameterizedTypeReference<>() {};
+
+  // Wraps body bytes (including file mappings) without copying them
+  private static final NettyDataBufferFactory BUFFERS = new NettyDataBufferFactory(ByteBufAllocator.DEFAULT);
+
+  private final AppProperties props;
+  private final WebClient webClient;
+  private final Tracer tracer;
+  private final TokenService tokenService;
+  private final RequestInspector inspector;
+  private final ResponseInspector responseInspector;
+  private final RequestFingerprint fingerprint;
+  private final ResponseCache responseCache;
+  private final InflightRequests inflightRequests;
+  private final SpanAttributeBudget attributeBudget;
+  private final LlmMetrics metrics;
+  private final CallResilience resilience;
+  private final LlmLimiter limiter;
+  private final EndpointRouter router;
+  private final RequestHeaders requestHeaders;
+  private final BodyCompression compression;
+
+  public LlmClient(AppProperties props, WebClient webClient, Tracer tracer, TokenService tokenService,
+                   RequestInspector inspector, ResponseInspector responseInspector,
+                   RequestFingerprint fingerprint, ResponseCache responseCache,
+                   InflightRequests inflightRequests, SpanAttributeBudget attributeBudget,
+                   LlmMetrics metrics, CallResilience resilience, LlmLimiter limiter,
+                   EndpointRouter router, RequestHeaders requestHeaders, BodyCompression compression) {
+    this.props = props;
+    this.webClient = webClient;
+    this.tracer = tracer;
+    this.tokenService = tokenService;
+    this.inspector = inspector;
+    this.responseInspector = responseInspector;
+    this.fingerprint = fingerprint;
+    this.responseCache = responseCache;
+    this.inflightRequests = inflightRequests;
+    this.attributeBudget = attributeBudget;
+    this.metrics = metrics;
+    this.resilience = resilience;
+    this.limiter = limiter;
+    this.router = router;
+    this.requestHeaders = requestHeaders;
+    this.compression = compression;
+  }
+
+  /** Fetches (or reuses) the bearer token, then sends the body. */
+  public Mono<String> chat(String jsonBody) {
+    return chat(ChatBody.of(jsonBody));
+  }
+
+  /**
+   * Same as {@link #chat(String)} for prepared bytes, e.g. a rendered template. The token
+   * fetch, if one is needed, runs inside the {@code chat} span.
+   */
+  public Mono<String> chat(ChatBody body) {
+    return exchange(body, tokenService.getBearerTokenAsync().defaultIfEmpty(""));
+  }
+
+  /** Sends the body with an already resolved bearer token (empty for none). */
+  public Mono<String> chat(String jsonBody, String token) {
+    return chat(ChatBody.of(jsonBody), token);
+  }
+
+  /** Sends the body bytes unchanged, e.g. a cached file mapping from {@link BodySource}. */
+  public Mono<String> chat(ChatBody body, String token) {
+    return exchange(body, Mono.just(token));
+  }
+
+  /** Streaming variant of {@link #chat(String)}. */
+  public Flux<String> chatStream(String jsonBody) {
+    return exchangeStream(ChatBody.of(jsonBody), tokenService.getBearerTokenAsync().defaultIfEmpty(""));
+  }
+
+  /**
+   * Sends the body and reads the response as {@code text/event-stream}, emitting each text delta
+   * as it arrives. The body itself must ask for streaming (e.g. {@code "stream": true}).
+   *
+   * <p>The {@code chat} span gets a {@code first_token} event plus TTFT, inter-token latency
+   * and chunk count attributes; the output message is rebuilt from the deltas.
+   */
+  public Flux<String> chatStream(ChatBody body, String token) {
+    return exchangeStream(body, Mono.just(token));
+  }
+
+  // ---------- the traced exchange ----------
+  //
+  // The chat span is the parent of the token fetch and the HTTP client span through the
+  // Reactor context (ReactorTracing); nothing is made current on a thread, so pipelines that
+  // share an event loop cannot see each other's spans.
+
+  private Mono<String> exchange(ChatBody body, Mono<String> token) {
+    return Mono.deferContextual(view -> {
+      Context parent = ReactorTracing.parent(view);
+      String requestId = requestHeaders.newId();
+      SpanAttributeBudget.Writer attrs = startSpan(body, requestId, parent);
+      Span span = attrs.span();
+      Context spanContext = parent.with(span);
+      LlmMetrics.Call metric = metrics.start(inspector.inspect(body, props.getExtraHeaders()), spanContext);
+
+      // Response cache: a hit still gets its own chat span and metrics, marked as such
+      long lookupStart = System.nanoTime();
+      String cacheKey = cacheKey(body);
+      if (cacheKey != null) {
+        String cached = responseCache.get(cacheKey);
+        span.setAttribute("llm.cache.hit", cached != null);
+        span.setAttribute("llm.cache.lookup_ms", (System.nanoTime() - lookupStart) / 1_000_000.0);
+        if (cached != null) {
+          responseInspector.applyTo(attrs, cached);
+          span.setStatus(StatusCode.OK);
+          span.end();
+          metric.cacheHit();
+          metric.end(false);
+          return Mono.just(cached);
+        }
+      }
+
+      // Hedges and retries (app.resilience.*) each send a fresh request with the same X-Request-Id,
+      // and each waits for its own limiter permit (app.limiter.*)
+      long estimate = limiter.estimate(body);
+      boolean[] sent = new boolean[1]; // false for merged followers: they reserved nothing
+      Supplier<Mono<String>> call = () -> {
+        sent[0] = true;
+        return token
+            .flatMap(t -> resilience.execute(span, attempt -> limiter.limit(estimate, attempt),
+                () -> router.route(span, url -> complete(url, t, requestId, body, span))))
+            .doOnNext(resp -> {
+              if (cacheKey != null) responseCache.put(cacheKey, resp);
+            });
+      };
+
+      // Identical concurrent requests share one upstream call
+      Mono<String> response = props.isMergeInflight()
+          ? inflightRequests.join(requestKey(body), span, call)
+          : call.get();
+
+      return response
+          .doOnNext(resp -> {
+            // output message, openinference.output_value and llm.usage.* in one pass
+            ResponseInspector.ResponseInfo info = responseInspector.applyTo(attrs, resp);
+            // Merged followers share the leader's upstream call; only the leader counts its usage
+            if (sent[0]) {
+              metric.usage(info);
+              limiter.reconcile(body, estimate, info.usage());
+            }
+            span.setStatus(StatusCode.OK);
+          })
+          .doOnError(err -> {
+            span.recordException(err);
+            span.setStatus(StatusCode.ERROR);
+          })
+          .doFinally(sig -> {
+            metric.end(sig == SignalType.ON_ERROR);
+            span.end();
+          })
+          .contextWrite(ReactorTracing.with(spanContext));
+    });
+  }
+
+  private Flux<String> exchangeStream(ChatBody body, Mono<String> token) {
+    return Flux.deferContextual(view -> {
+      Context parent = ReactorTracing.parent(view);
+      String requestId = requestHeaders.newId();
+      SpanAttributeBudget.Writer attrs = startSpan(body, requestId, parent);
+      Span span = attrs.span();
+      Context spanContext = parent.with(span);
+      span.setAttribute("llm.stream", true);
+      LlmMetrics.Call metric = metrics.start(inspector.inspect(body, props.getExtraHeaders()), spanContext);
+      long estimate = limiter.estimate(body);
+      StreamTrace trace = new StreamTrace(System.nanoTime());
+
+      return token
+          .flatMapMany(t -> limiter.limit(estimate,
+              router.routeMany(span, url -> stream(url, t, requestId, body, span))))
+          .mapNotNull(ServerSentEvent::data)
+          .takeWhile(data -> !"[DONE]".equals(data.trim()))
+          .concatMap(data -> {
+            ResponseInspector.ResponseInfo chunk = responseInspector.inspect(data);
+            if (chunk.usage() != null) trace.usageChunk = chunk;
+            String delta = chunk.text();
+            if (!StringUtils.hasLength(delta)) return Mono.empty();
+            long now = System.nanoTime();
+            if (trace.firstNanos < 0) metric.firstToken(now);
+            trace.onDelta(span, delta, now);
+            return Mono.just(delta);
+          })
+          .doOnComplete(() -> {
+            trace.record(span);
+            responseInspector.setOutput(attrs, trace.text.toString());
+            if (trace.usageChunk != null) {
+              responseInspector.setUsage(span, trace.usageChunk);
+              metric.usage(trace.usageChunk);
+              limiter.reconcile(body, estimate, trace.usageChunk.usage());
+            }
+            span.setStatus(StatusCode.OK);
+          })
+          .doOnError(err -> {
+            trace.record(span);
+            span.recordException(err);
+            span.setStatus(StatusCode.ERROR);
+          })
+          .doFinally(sig -> {
+            metric.end(sig == SignalType.ON_ERROR);
+            span.end();
+          })
+          .contextWrite(ReactorTracing.with(spanContext));
+    });
+  }
+
+  // ---------- helpers ----------
+
+  // One request to one endpoint; resent uncompressed if the server rejects the encoding
+  private Mono<String> complete(String url, String token, String requestId, ChatBody body, Span span) {
+    return compression.withFallback(url, body, span, encoding ->
+        send(prepare(url, token, requestId, MediaType.APPLICATION_JSON), body, encoding, span)
+            .flatMap(req -> req.retrieve().bodyToMono(String.class)));
+  }
+
+  private Flux<ServerSentEvent<String>> stream(String url, String token, String requestId, ChatBody body,
+                                               Span span) {
+    return compression.withFallbackMany(url, body, span, encoding ->
+        send(prepare(url, token, requestId, MediaType.TEXT_EVENT_STREAM), body, encoding, span)
+            .flatMapMany(req -> req.retrieve().bodyToFlux(SSE_TYPE)));
+  }
+
+  // Fixed headers were built once at startup; only IDs, date and token are per request
+  private WebClient.RequestBodySpec prepare(String url, String token, String requestId, MediaType accept) {
+    return webClient
+        .post()
+        .uri(url)
+        .headers(headers -> requestHeaders.apply(headers, accept, requestId, token));
+  }
+
+  /** Null when caching is off or the request is not eligible (e.g. temperature above 0). */
+  private String cacheKey(ChatBody body) {
+    if (!responseCache.isEnabled()) return null;
+    RequestFingerprint.Fingerprint fp = fingerprint.of(body);
+    if (!responseCache.accepts(fp)) return null;
+    return ResponseCache.key(inspector.inspect(body, props.getExtraHeaders()).model(), fp);
+  }
+
+  // Model plus canonical body hash; both are cached on the body
+  private String requestKey(ChatBody body) {
+    return ResponseCache.key(inspector.inspect(body, props.getExtraHeaders()).model(), fingerprint.of(body));
+  }
+
+  // A fresh view of the bytes per subscription, so retries resend the whole body.
+  // With an encoding (app.compression.*) the body is compressed off the event loop, and the
+  // compressed bytes are cached on the body.
+  private Mono<WebClient.RequestHeadersSpec<?>> send(WebClient.RequestBodySpec req, ChatBody body,
+                                                     String encoding, Span span) {
+    span.setAttribute("http.request.body.uncompressed_size", body.size());
+    if (encoding == null) {
+      span.setAttribute("http.request.body.size", body.size());
+      return Mono.just(req
+          .contentLength(body.size())
+          .body(BodyInserters.fromDataBuffers(Mono.fromSupplier(() -> BUFFERS.wrap(body.bytes())))));
+    }
+    return compression.compressAsync(body, encoding).map(compressed -> {
+      span.setAttribute("http.request.body.size", compressed.length);
+      return req
+          .header(HttpHeaders.CONTENT_ENCODING, encoding)
+          .contentLength(compressed.length)
+          .body(BodyInserters.fromDataBuffers(Mono.fromSupplier(() -> BUFFERS.wrap(compressed))));
+    });
+  }
+
+  private SpanAttributeBudget.Writer startSpan(ChatBody body, String requestId, Context parent) {
+    RequestInspector.RequestInfo info = inspector.inspect(body, props.getExtraHeaders());
+
+    Span span = tracer.spanBuilder("chat").setParent(parent).startSpan();
+    // OpenInference attributes
+    span.setAttribute("openinference.span.kind", "LLM");
+    span.setAttribute("llm.model_name", info.model());
+    span.setAttribute("llm.provider", info.provider());
+    span.setAttribute("request.id", requestId);
+    // input message
+    span.setAttribute("llm.input_messages.0.message.role", "user");
+    SpanAttributeBudget.Writer attrs = attributeBudget.forSpan(span);
+    attrs.set("llm.input_messages.0.message.content", info.prompt());
+    return attrs;
+  }
+
+  /** Timing of one streamed response; only touched from the (serialized) Flux signals. */
+  private static final class StreamTrace {
+    final long startNanos;
+    final StringBuilder text = new StringBuilder();
+    ResponseInspector.ResponseInfo usageChunk;
+    long firstNanos = -1;
+    long lastNanos;
+    long chunks;
+    long gapSumNanos;
+    long gapMaxNanos;
+
+    StreamTrace(long startNanos) {
+      this.startNanos = startNanos;
+    }
+
+    void onDelta(Span span, String delta, long now) {
+      if (firstNanos < 0) {
+        firstNanos = now;
+        span.addEvent("first_token",
+            Attributes.of(AttributeKey.doubleKey("llm.ttft_ms"), millis(now - startNanos)));
+      } else {
+        long gap = now - lastNanos;
+        gapSumNanos += gap;
+        gapMaxNanos = Math.max(gapMaxNanos, gap);
+      }
+      lastNanos = now;
+      chunks++;
+      text.append(delta);
+    }
+
+    void record(Span span) {
+      span.setAttribute("llm.stream.chunk_count", chunks);
+      if (firstNanos < 0) return;
+      span.setAttribute("llm.ttft_ms", millis(firstNanos - startNanos));
+      if (chunks > 1) {
+        span.setAttribute("llm.stream.inter_token_latency_ms.avg", millis(gapSumNanos / (chunks - 1)));
+        span.setAttribute("llm.stream.inter_token_latency_ms.max", millis(gapMaxNanos));
+      }
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1_000_000.0;
+    }
+  }
+}
@@ -0,0 +1,326 @@
+package com.example.demoapp;
+
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Client-side limiter in front of each LLM attempt ({@code app.limiter.*}), so we slow down
+ * before the backend's request and token quotas answer with 429s.
+ *
+ * <p>Concurrency follows AIMD: the limit grows by one per limit's worth of successful calls and
+ * is cut by {@code backoffRatio} on a 429, a timeout (an attempt timeout applied inside the
+ * permit, or the HTTP client's response timeout), or latency above {@code latencyTolerance} times
+ * the recent minimum (at most once per minimum latency, so one burst of failures counts once).
+ * The latency signal is off by default: a call's duration grows with the answer length, so a
+ * long answer would read as overload. Streaming calls never feed it.
+ *
+ * <p>With {@code tokensPerMinute} set, each attempt also reserves its estimated tokens from a
+ * bucket that refills at that rate. The estimate is body size times the observed input tokens
+ * per byte, plus the average observed output; {@link #reconcile} replaces it with the real
+ * usage once the response is parsed, and failed or cancelled attempts are refunded.
+ *
+ * <p>Waiters are served in order; the queue is bounded by {@code maxQueued} and
+ * {@code queueTimeout}. A call turned away by either fails with {@link RejectedException}, which
+ * is our own back-pressure and must not be retried like an upstream timeout.
+ */
+@Component
+public class LlmLimiter {
+
+  // Minimum latency is re-learned over this window, so a slower backend raises the baseline
+  private static final long MIN_RTT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+  private static final double EWMA_WEIGHT = 0.1;
+
+  private record Waiter(long tokens, MonoSink<Permit> sink) {}
+
+  private final AppProperties.Limiter settings;
+  private final double tokensPerNano;
+  private final double tokenCapacity;
+  private final LongCounter throttled;
+
+  // guarded by this
+  private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+  private double limit;
+  private int inFlight;
+  private double tokens;
+  private long tokensUpdatedNanos = System.nanoTime();
+  private boolean refillScheduled;
+  private long minRttNanos = Long.MAX_VALUE;
+  private long windowMinRttNanos = Long.MAX_VALUE;
+  private long windowStartNanos = System.nanoTime();
+  private long lastDecreaseNanos;
+
+  // Estimator state; racy updates only blur the average
+  private volatile double inputTokensPerByte = 0.25;
+  private volatile double outputTokens;
+
+  public LlmLimiter(AppProperties props, OpenTelemetry otel) {
+    this.settings = props.getLimiter();
+    this.limit = settings.getInitialLimit();
+    this.tokenCapacity = settings.getTokensPerMinute();
+    this.tokensPerNano = settings.getTokensPerMinute() / (double) TimeUnit.MINUTES.toNanos(1);
+    this.tokens = tokenCapacity;
+    this.outputTokens = settings.getDefaultOutputTokens();
+
+    Meter meter = otel.getMeter("com.example.demoapp");
+    this.throttled = meter.counterBuilder("llm.limiter.throttled")
+        .setDescription("Attempts answered with 429")
+        .build();
+    meter.gaugeBuilder("llm.limiter.limit")
+        .setDescription("Current concurrency limit")
+        .buildWithCallback(m -> m.record(currentLimit()));
+    meter.upDownCounterBuilder("llm.limiter.in_flight")
+        .buildWithCallback(m -> m.record(currentInFlight()));
+    meter.upDownCounterBuilder("llm.limiter.queued")
+        .setDescription("Calls waiting for a permit")
+        .buildWithCallback(m -> m.record(queued()));
+    if (tokenCapacity > 0) {
+      meter.gaugeBuilder("llm.limiter.tokens_available")
+          .setDescription("Tokens left in the per-minute budget")
+          .buildWithCallback(m -> m.record(availableTokens()));
+    }
+  }
+
+  public boolean isEnabled() {
+    return settings.isEnabled();
+  }
+
+  /** Tokens to reserve for {@code body}; pass the same value to {@link #limit} and {@link #reconcile}. */
+  public long estimate(ChatBody body) {
+    if (!settings.isEnabled() || tokenCapacity <= 0) return 0;
+    return (long) Math.ceil(body.size() * inputTokensPerByte + outputTokens);
+  }
+
+  /** Thrown when the wait queue is full or a caller waited {@code queueTimeout} for a permit. */
+  public static final class RejectedException extends RuntimeException {
+    RejectedException(String message) {
+      // Raised in bulk under overload; the stack trace says nothing useful
+      super(message, null, false, false);
+    }
+  }
+
+  /**
+   * Runs {@code attempt} once a permit (and {@code estimate} tokens) is available. A per-attempt
+   * timeout belongs inside {@code attempt}, so that it starts at the grant and its
+   * {@link TimeoutException} reaches the permit.
+   */
+  public <T> Mono<T> limit(long estimate, Mono<T> attempt) {
+    if (!settings.isEnabled()) return attempt;
+    return acquire(estimate).flatMap(permit -> attempt
+        .doOnNext(v -> permit.succeeded(true))
+        .doOnError(permit::failed)
+        .doFinally(sig -> permit.cancelled()));
+  }
+
+  /** Streaming form of {@link #limit(long, Mono)}; the permit is held until the stream ends. */
+  public <T> Flux<T> limit(long estimate, Flux<T> attempt) {
+    if (!settings.isEnabled()) return attempt;
+    return acquire(estimate).flatMapMany(permit -> attempt
+        .doOnComplete(() -> permit.succeeded(false))
+        .doOnError(permit::failed)
+        .doFinally(sig -> permit.cancelled()));
+  }
+
+  /** Swaps the reserved estimate for the real usage and refines the estimator. */
+  public void reconcile(ChatBody body, long estimate, ResponseInspector.Usage usage) {
+    if (!settings.isEnabled() || usage == null) return;
+    if (body.size() > 0 && usage.inputTokens() > 0) {
+      inputTokensPerByte += EWMA_WEIGHT * ((double) usage.inputTokens() / body.size() - inputTokensPerByte);
+    }
+    outputTokens += EWMA_WEIGHT * (usage.outputTokens() - outputTokens);
+    if (tokenCapacity <= 0) return;
+    long actual = usage.totalTokens() > 0 ? usage.totalTokens() : usage.inputTokens() + usage.outputTokens();
+    synchronized (this) {
+      refill(System.nanoTime());
+      // May go below zero: the next calls wait out the debt
+      tokens += estimate - actual;
+    }
+    drain();
+  }
+
+  // ---------- permits ----------
+
+  private Mono<Permit> acquire(long estimate) {
+    return Mono.<Permit>create(sink -> {
+          Waiter waiter = new Waiter(estimate, sink);
+          boolean full;
+          synchronized (this) {
+            full = waiters.size() >= settings.getMaxQueued();
+            if (!full) waiters.add(waiter);
+          }
+          if (full) {
+            sink.error(new RejectedException("LLM limiter queue is full (app.limiter.max-queued)"));
+            return;
+          }
+          sink.onCancel(() -> {
+            synchronized (this) {
+              waiters.remove(waiter);
+            }
+          });
+          drain();
+        })
+        // A permit granted just as the caller went away is handed back
+        .doOnDiscard(Permit.class, Permit::cancelled)
+        .timeout(settings.getQueueTimeout(), Mono.error(() ->
+            new RejectedException("Timed out waiting for an LLM limiter permit (app.limiter.queue-timeout)")));
+  }
+
+  // Grants permits in order while the limit and the token budget allow
+  private void drain() {
+    List<Runnable> grants = new ArrayList<>();
+    synchronized (this) {
+      long now = System.nanoTime();
+      refill(now);
+      while (!waiters.isEmpty() && inFlight < (int) limit) {
+        Waiter head = waiters.peek();
+        // A reservation larger than the whole budget waits for a full bucket
+        double needed = Math.min(head.tokens(), tokenCapacity);
+        if (tokenCapacity > 0 && tokens < needed) {
+          scheduleRefill((long) Math.ceil((needed - tokens) / tokensPerNano));
+          break;
+        }
+        waiters.poll();
+        inFlight++;
+        tokens -= head.tokens();
+        Permit permit = new Permit(head.tokens(), now);
+        grants.add(() -> head.sink().success(permit));
+      }
+    }
+    grants.forEach(Runnable::run);
+  }
+
+  // guarded by this
+  private void refill(long now) {
+    if (tokenCapacity > 0) {
+      tokens = Math.min(tokenCapacity, tokens + (now - tokensUpdatedNanos) * tokensPerNano);
+    }
+    tokensUpdatedNanos = now;
+  }
+
+  // guarded by this
+  private void scheduleRefill(long nanos) {
+    if (refillScheduled) return;
+    refillScheduled = true;
+    Schedulers.parallel().schedule(() -> {
+      synchronized (this) {
+        refillScheduled = false;
+      }
+      drain();
+    }, Math.max(nanos, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+  }
+
+  private void release(Permit permit, boolean refund, Signal signal, long rttNanos) {
+    synchronized (this) {
+      inFlight--;
+      long now = System.nanoTime();
+      if (refund) {
+        refill(now);
+        tokens += permit.tokens;
+      }
+      adjust(signal, rttNanos, now);
+    }
+    drain();
+  }
+
+  // guarded by this; AIMD on the outcome of one attempt
+  private void adjust(Signal signal, long rttNanos, long now) {
+    boolean overloaded = signal == Signal.DROP;
+    if (rttNanos > 0) {
+      if (now - windowStartNanos > MIN_RTT_WINDOW_NANOS) {
+        minRttNanos = Math.min(windowMinRttNanos, rttNanos);
+        windowMinRttNanos = Long.MAX_VALUE;
+        windowStartNanos = now;
+      }
+      windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+      minRttNanos = Math.min(minRttNanos, rttNanos);
+      double tolerance = settings.getLatencyTolerance();
+      overloaded |= tolerance > 0 && rttNanos > minRttNanos * tolerance;
+    }
+
+    if (overloaded) {
+      long cooldown = minRttNanos == Long.MAX_VALUE ? TimeUnit.SECONDS.toNanos(1) : minRttNanos;
+      if (now - lastDecreaseNanos >= cooldown) {
+        lastDecreaseNanos = now;
+        limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+      }
+    } else if (signal == Signal.SUCCESS && inFlight * 2 >= limit) {
+      // Only grow while the limit is actually in use
+      limit = Math.min(settings.getMaxLimit(), limit + 1 / limit);
+    }
+  }
+
+  private enum Signal { SUCCESS, DROP, NEUTRAL }
+
+  // The attempt timeout, or the HTTP client's responseTimeout surfacing through WebClient
+  private static boolean timedOut(Throwable err) {
+    return err instanceof TimeoutException
+        || err instanceof WebClientRequestException && err.getCause() instanceof ReadTimeoutException;
+  }
+
+  /** One granted attempt; released exactly once, by whichever signal comes first. */
+  private final class Permit {
+    private final long tokens;
+    private final long startNanos;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    Permit(long tokens, long startNanos) {
+      this.tokens = tokens;
+      this.startNanos = startNanos;
+    }
+
+    void succeeded(boolean measureLatency) {
+      if (!released.compareAndSet(false, true)) return;
+      release(this, false, Signal.SUCCESS, measureLatency ? System.nanoTime() - startNanos : 0);
+    }
+
+    // Any failure is refunded (the backend did not bill it); a 429 or timeout also cuts the limit
+    void failed(Throwable err) {
+      if (!released.compareAndSet(false, true)) return;
+      boolean tooMany = err instanceof WebClientResponseException e && e.getStatusCode().value() == 429;
+      if (tooMany) throttled.add(1);
+      release(this, true, tooMany || timedOut(err) ? Signal.DROP : Signal.NEUTRAL, 0);
+    }
+
+    // Cancelled (e.g. the losing side of a hedge) or completed empty
+    void cancelled() {
+      if (!released.compareAndSet(false, true)) return;
+      release(this, true, Signal.NEUTRAL, 0);
+    }
+  }
+
+  // ---------- metrics ----------
+
+  private synchronized double currentLimit() {
+    return limit;
+  }
+
+  private synchronized long currentInFlight() {
+    return inFlight;
+  }
+
+  private synchronized long queued() {
+    return waiters.size();
+  }
+
+  private synchronized double availableTokens() {
+    refill(System.nanoTime());
+    return tokens;
+  }
+}
@@ -0,0 +1,153 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleHistogram;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongUpDownCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request metrics for the {@code chat} calls, broken down by {@code llm.model_name} and
+ * {@code llm.provider}: duration and TTFT histograms, token counters, errors and in-flight calls.
+ *
+ * <p>Attribute sets are built once per model/provider pair, and measurements are recorded in
+ * the call's span context so sampled traces show up as exemplars. Both names come from the
+ * request, so only the first {@code otel.metrics.max-series} pairs get their own series; later
+ * ones are recorded as {@code other}. Duration and errors also carry {@code llm.cache.hit}, so
+ * responses served from the {@link ResponseCache} are counted without skewing upstream latency.
+ */
+@Component
+public class LlmMetrics {
+
+  private static final AttributeKey<String> MODEL = AttributeKey.stringKey("llm.model_name");
+  private static final AttributeKey<String> PROVIDER = AttributeKey.stringKey("llm.provider");
+  private static final AttributeKey<Boolean> CACHE_HIT = AttributeKey.booleanKey("llm.cache.hit");
+
+  // The attribute sets of one model/provider pair
+  private record Series(Attributes base, Attributes miss, Attributes hit) {}
+
+  private static final Series OTHER = seriesOf("other", "other");
+
+  private final DoubleHistogram duration;
+  private final DoubleHistogram ttft;
+  private final LongCounter inputTokens;
+  private final LongCounter outputTokens;
+  private final LongCounter errors;
+  private final LongUpDownCounter inFlight;
+
+  // model -> provider -> series; lookups on the request path do not allocate
+  private final Map<String, Map<String, Series>> attributes = new ConcurrentHashMap<>();
+  private final int maxSeries;
+  private int series; // guarded by attributes
+
+  public LlmMetrics(OpenTelemetry otel, @Value("${otel.metrics.max-series:100}") int maxSeries) {
+    this.maxSeries = maxSeries;
+    Meter meter = otel.getMeter("com.example.demoapp");
+    this.duration = meter.histogramBuilder("llm.request.duration")
+        .setDescription("Time from sending the request to the full response")
+        .setUnit("ms")
+        .build();
+    this.ttft = meter.histogramBuilder("llm.ttft")
+        .setDescription("Time to the first streamed token")
+        .setUnit("ms")
+        .build();
+    this.inputTokens = meter.counterBuilder("llm.usage.input_tokens")
+        .setUnit("{token}")
+        .build();
+    this.outputTokens = meter.counterBuilder("llm.usage.output_tokens")
+        .setUnit("{token}")
+        .build();
+    this.errors = meter.counterBuilder("llm.errors")
+        .setDescription("Calls that ended in an error")
+        .build();
+    this.inFlight = meter.upDownCounterBuilder("llm.requests.in_flight")
+        .setDescription("Calls waiting for their response")
+        .build();
+  }
+
+  /**
+   * Starts timing one call; the returned handle records everything else about it.
+   * {@code spanContext} holds the call's span (the context it already propagates), for exemplars.
+   */
+  public Call start(RequestInspector.RequestInfo info, Context spanContext) {
+    Call call = new Call(series(info.model(), info.provider()), spanContext, System.nanoTime());
+    inFlight.add(1, call.series.base(), spanContext);
+    return call;
+  }
+
+  private Series series(String model, String provider) {
+    Map<String, Series> byProvider = attributes.get(model);
+    Series attrs = byProvider != null ? byProvider.get(provider) : null;
+    if (attrs != null) return attrs;
+    synchronized (attributes) {
+      byProvider = attributes.get(model);
+      attrs = byProvider != null ? byProvider.get(provider) : null;
+      if (attrs != null) return attrs;
+      if (series >= maxSeries) return OTHER;
+      if (byProvider == null) {
+        byProvider = new ConcurrentHashMap<>();
+        attributes.put(model, byProvider);
+      }
+      attrs = seriesOf(model, provider);
+      byProvider.put(provider, attrs);
+      series++;
+      return attrs;
+    }
+  }
+
+  private static Series seriesOf(String model, String provider) {
+    Attributes base = Attributes.of(MODEL, model, PROVIDER, provider);
+    return new Series(base, base.toBuilder().put(CACHE_HIT, false).build(),
+        base.toBuilder().put(CACHE_HIT, true).build());
+  }
+
+  public final class Call {
+    private final Series series;
+    private final Context context; // carries the span for exemplars
+    private final long startNanos;
+    private boolean cacheHit;
+    private boolean ended;
+
+    private Call(Series series, Context context, long startNanos) {
+      this.series = series;
+      this.context = context;
+      this.startNanos = startNanos;
+    }
+
+    public void firstToken(long nanos) {
+      ttft.record((nanos - startNanos) / 1_000_000.0, series.base(), context);
+    }
+
+    /** Token usage of the upstream call; record it once per call actually sent. */
+    public void usage(ResponseInspector.ResponseInfo info) {
+      ResponseInspector.Usage usage = info.usage();
+      if (usage == null) return;
+      inputTokens.add(usage.inputTokens(), series.base(), context);
+      outputTokens.add(usage.outputTokens(), series.base(), context);
+    }
+
+    /** Marks the call as answered from the response cache; call before {@link #end}. */
+    public void cacheHit() {
+      cacheHit = true;
+    }
+
+    /** Records duration (and the error, if any); later calls are ignored. */
+    public void end(boolean error) {
+      if (ended) return;
+      ended = true;
+      Attributes attrs = cacheHit ? series.hit() : series.miss();
+      inFlight.add(-1, series.base(), context);
+      duration.record((System.nanoTime() - startNanos) / 1_000_000.0, attrs, context);
+      if (error) errors.add(1, attrs, context);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.example.demoapp;
+
+import io.opentelemetry.exporter.otlp.metrics.OtlpGrpcMetricExporter;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.SdkMeterProviderBuilder;
+import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
+import io.opentelemetry.sdk.resources.Resource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Metrics export shared by the {@code TelemetryConfig} variants ({@code otel.metrics.*}): OTLP
+ * gRPC to {@code endpoint} every {@code interval}. Every variant registers this meter provider,
+ * so the application's instruments (LLM calls, limiter, routing, pools, batching, spool) report
+ * whichever tracing backend is in use. Exemplars come from measurements made in a sampled span
+ * (the SDK's default trace-based exemplar filter).
+ */
+@Component
+public class MetricsExport {
+
+  private final boolean enabled;
+  private final String endpoint;
+  private final Duration interval;
+
+  public MetricsExport(
+      @Value("${otel.metrics.enabled:true}") boolean enabled,
+      @Value("${otel.metrics.endpoint:http://localhost:4317}") String endpoint,
+      @Value("${otel.metrics.interval:60s}") Duration interval) {
+    this.enabled = enabled;
+    this.endpoint = endpoint;
+    this.interval = interval;
+  }
+
+  /** With {@code otel.metrics.enabled=false} instruments still work but nothing is exported. */
+  public SdkMeterProvider meterProvider(Resource resource) {
+    SdkMeterProviderBuilder builder = SdkMeterProvider.builder().setResource(resource);
+    if (enabled) {
+      var exporter = OtlpGrpcMetricExporter.builder()
+          .setEndpoint(endpoint)
+          .build();
+      builder.registerMetricReader(PeriodicMetricReader.builder(exporter).setInterval(interval).build());
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,49 @@
+package com.example.demoapp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Span export destinations (otel.export.destinations[n].*). When the list is empty the
+ * TelemetryConfig's own exporter is used.
+ */
+@ConfigurationProperties(prefix = "otel.export")
+public class OtlpExportProperties {
+  private List<Destination> destinations = new ArrayList<>();
+
+  public List<Destination> getDestinations() { return destinations; }
+  public void setDestinations(List<Destination> destinations) { this.destinations = destinations; }
+
+  public static class Destination {
+    // Also names the destination's batch queue, spool directory and metrics
+    private String name;
+    private boolean enabled = true;
+    // grpc or http (HTTP/protobuf)
+    private String protocol = "grpc";
+    private String endpoint;
+    private Map<String, String> headers = new LinkedHashMap<>();
+    // gzip or none
+    private String compression = "none";
+    private Duration timeout = Duration.ofSeconds(10);
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public String getProtocol() { return protocol; }
+    public void setProtocol(String protocol) { this.protocol = protocol; }
+    public String getEndpoint() { return endpoint; }
+    public void setEndpoint(String endpoint) { this.endpoint = endpoint; }
+    public Map<String, String> getHeaders() { return headers; }
+    public void setHeaders(Map<String, String> headers) { this.headers = headers; }
+    public String getCompression() { return compression; }
+    public void setCompression(String compression) { this.compression = compression; }
+    public Duration getTimeout() { return timeout; }
+    public void setTimeout(Duration timeout) { this.timeout = timeout; }
+  }
+}
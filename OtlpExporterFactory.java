@@ -0,0 +1,77 @@
+package com.example.demoapp;
+
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporterBuilder;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporterBuilder;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds one OTLP exporter per {@code otel.export.destinations} entry. Each one gets its own
+ * batch queue (and spool, if enabled), so a slow or unreachable backend only backs up its own
+ * queue.
+ */
+@Component
+public class OtlpExporterFactory {
+
+  private final OtlpExportProperties props;
+  private final SpanExportSettings export;
+  private final SpanSpool spool;
+
+  public OtlpExporterFactory(OtlpExportProperties props, SpanExportSettings export, SpanSpool spool) {
+    this.props = props;
+    this.export = export;
+    this.spool = spool;
+  }
+
+  /** One processor per enabled destination; empty when none are configured. */
+  public List<SpanProcessor> processors() {
+    List<SpanProcessor> processors = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (OtlpExportProperties.Destination d : props.getDestinations()) {
+      if (!d.isEnabled()) continue;
+      String name = StringUtils.hasText(d.getName()) ? d.getName() : d.getProtocol() + "-" + processors.size();
+      if (!names.add(name)) {
+        throw new IllegalArgumentException("Duplicate otel.export destination name: " + name);
+      }
+      processors.add(export.processor(name, spool.wrap(name, create(name, d))));
+    }
+    return processors;
+  }
+
+  public SpanExporter create(String name, OtlpExportProperties.Destination d) {
+    if (!StringUtils.hasText(d.getEndpoint())) {
+      throw new IllegalArgumentException("otel.export destination " + name + " has no endpoint");
+    }
+    String compression = "gzip".equalsIgnoreCase(d.getCompression()) ? "gzip" : "none";
+    return switch (d.getProtocol().toLowerCase()) {
+      case "grpc" -> {
+        OtlpGrpcSpanExporterBuilder builder = OtlpGrpcSpanExporter.builder()
+            .setEndpoint(d.getEndpoint())
+            .setCompression(compression)
+            .setTimeout(d.getTimeout());
+        d.getHeaders().forEach(builder::addHeader);
+        yield builder.build();
+      }
+      case "http", "http/protobuf" -> {
+        OtlpHttpSpanExporterBuilder builder = OtlpHttpSpanExporter.builder()
+            .setEndpoint(d.getEndpoint())
+            .setCompression(compression)
+            .setTimeout(d.getTimeout());
+        d.getHeaders().forEach(builder::addHeader);
+        yield builder.build();
+      }
+      default -> throw new IllegalArgumentException(
+          "Unknown protocol '" + d.getProtocol() + "' for otel.export destination " + name + " (use grpc or http)");
+    };
+  }
+}
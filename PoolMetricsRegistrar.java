@@ -0,0 +1,63 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes Reactor Netty pool state as OpenTelemetry gauges. Reactor Netty registers one
+ * {@link ConnectionPoolMetrics} per remote address; the gauges read them on each collection.
+ */
+class PoolMetricsRegistrar implements ConnectionProvider.MeterRegistrar {
+
+  private static final AttributeKey<String> POOL = AttributeKey.stringKey("pool.name");
+  private static final AttributeKey<String> REMOTE = AttributeKey.stringKey("server.address");
+
+  private record Pool(Attributes attributes, ConnectionPoolMetrics metrics) {}
+
+  private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+  PoolMetricsRegistrar(Meter meter) {
+    gauge(meter, "http.client.pool.active", "Connections acquired by a request", ConnectionPoolMetrics::acquiredSize);
+    gauge(meter, "http.client.pool.idle", "Idle connections", ConnectionPoolMetrics::idleSize);
+    gauge(meter, "http.client.pool.pending", "Requests waiting for a connection", ConnectionPoolMetrics::pendingAcquireSize);
+    gauge(meter, "http.client.pool.allocated", "Open connections", ConnectionPoolMetrics::allocatedSize);
+    gauge(meter, "http.client.pool.max", "Maximum connections", ConnectionPoolMetrics::maxAllocatedSize);
+  }
+
+  @Override
+  public void registerMetrics(String poolName, String id, SocketAddress remoteAddress, ConnectionPoolMetrics metrics) {
+    Attributes attributes = Attributes.of(POOL, poolName, REMOTE, String.valueOf(remoteAddress));
+    pools.put(key(poolName, id, remoteAddress), new Pool(attributes, metrics));
+  }
+
+  @Override
+  public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+    pools.remove(key(poolName, id, remoteAddress));
+  }
+
+  private void gauge(Meter meter, String name, String description, ToLongFunction<ConnectionPoolMetrics> value) {
+    meter.gaugeBuilder(name)
+        .setDescription(description)
+        .setUnit("{connection}")
+        .ofLongs()
+        .buildWithCallback((ObservableLongMeasurement m) -> {
+          for (Pool pool : pools.values()) {
+            m.record(value.applyAsLong(pool.metrics()), pool.attributes());
+          }
+        });
+  }
+
+  private static String key(String poolName, String id, SocketAddress remoteAddress) {
+    return poolName + '|' + id + '|' + remoteAddress;
+  }
+}
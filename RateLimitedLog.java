@@ -0,0 +1,44 @@
+package com.example.demoapp;
+
+import org.apache.commons.logging.Log;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warning that can fire on every failed request or batch: logged at most once per
+ * {@code interval}, with the number of occurrences suppressed since the last one. Use one
+ * instance per message.
+ */
+final class RateLimitedLog {
+
+  private final Log log;
+  private final long intervalNanos;
+  private final AtomicLong nextNanos;
+  private final AtomicLong suppressed = new AtomicLong();
+
+  RateLimitedLog(Log log, Duration interval) {
+    this.log = log;
+    this.intervalNanos = interval.toNanos();
+    this.nextNanos = new AtomicLong(System.nanoTime());
+  }
+
+  void warn(String format, Object... args) {
+    warn(null, format, args);
+  }
+
+  /** The message is only formatted when it is logged. */
+  void warn(Throwable cause, String format, Object... args) {
+    long now = System.nanoTime();
+    long due = nextNanos.get();
+    if (now - due < 0 || !nextNanos.compareAndSet(due, now + intervalNanos)) {
+      suppressed.incrementAndGet();
+      return;
+    }
+    if (!log.isWarnEnabled()) return;
+    String message = String.format(format, args);
+    long skipped = suppressed.getAndSet(0);
+    if (skipped > 0) message += " (" + skipped + " more since last logged)";
+    log.warn(message, cause);
+  }
+}
@@ -0,0 +1,27 @@
+package com.example.demoapp;
+
+import io.opentelemetry.context.Context;
+
+import reactor.util.context.ContextView;
+
+/**
+ * Carries the OpenTelemetry context through the Reactor subscriber context instead of a
+ * thread-local {@code Scope}, so it follows a pipeline across event-loop threads and never
+ * leaks into other requests running on the same thread.
+ */
+final class ReactorTracing {
+
+  private static final Class<Context> KEY = Context.class;
+
+  private ReactorTracing() {}
+
+  /** The parent for a new span: the pipeline's context, else the caller's current one. */
+  static Context parent(ContextView view) {
+    return view.getOrDefault(KEY, Context.current());
+  }
+
+  /** For {@code contextWrite}: makes {@code otel} the parent for everything upstream. */
+  static reactor.util.context.Context with(Context otel) {
+    return reactor.util.context.Context.of(KEY, otel);
+  }
+}
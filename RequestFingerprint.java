@@ -0,0 +1,183 @@
+package com.example.demoapp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Hashes a request body in canonical form, streaming: whitespace, object key order and number
+ * spelling ({@code 0} vs {@code 0.0}) do not change the hash. Each object member is hashed on its
+ * own and the member digests are sorted before being combined, so no tree is built.
+ *
+ * <p>One digest per nesting level is reused for the whole walk, and strings are hashed from the
+ * parser's character buffer, so a large body costs no per-value allocations beyond the member
+ * digests being sorted.
+ *
+ * <p>Also reports whether the call is deterministic ({@code temperature} of 0), which is what
+ * makes a response safe to reuse. A top-level {@code temperature} wins over
+ * {@code parameters.temperature}, as top-level {@code model} does in {@link RequestInspector}.
+ */
+@Component
+public class RequestFingerprint {
+
+  public record Fingerprint(String hash, boolean deterministic) {}
+
+  private final JsonFactory factory = new JsonFactory();
+
+  public Fingerprint of(ChatBody body) {
+    Fingerprint cached = body.cachedFingerprint();
+    if (cached != null) return cached;
+
+    try (JsonParser p = body.array() != null
+        ? factory.createParser(body.array(), body.arrayOffset(), body.size())
+        : factory.createParser(new ByteBufferBackedInputStream(body.bytes()))) {
+      Walk walk = new Walk();
+      byte[] digest = walk.value(p, p.nextToken(), 0).clone();
+      cached = new Fingerprint(HexFormat.of().formatHex(digest), walk.deterministic());
+    } catch (IOException e) {
+      // Not JSON: fall back to the raw bytes, and never treat it as deterministic
+      MessageDigest md = sha256();
+      md.update(body.bytes());
+      cached = new Fingerprint(HexFormat.of().formatHex(md.digest()), false);
+    }
+    body.cacheFingerprint(cached);
+    return cached;
+  }
+
+  private static final class Walk {
+    private static final int DIGEST_BYTES = 32;
+
+    // Per depth: the value digest, the member digest and the value result. A level's digests are
+    // done with before the walk returns to it, so reusing them is safe.
+    private final List<MessageDigest> values = new ArrayList<>();
+    private final List<MessageDigest> members = new ArrayList<>();
+    private final List<byte[]> results = new ArrayList<>();
+    private final byte[] utf8 = new byte[1024];
+
+    private Boolean temperatureZero;       // top-level temperature
+    private Boolean paramsTemperatureZero; // parameters.temperature
+    private boolean inParameters;
+
+    boolean deterministic() {
+      Boolean zero = temperatureZero != null ? temperatureZero : paramsTemperatureZero;
+      return zero != null && zero;
+    }
+
+    // The returned array is reused: read it before the next call at the same depth
+    byte[] value(JsonParser p, JsonToken token, int depth) throws IOException {
+      MessageDigest md = level(values, depth);
+      switch (token) {
+        case START_OBJECT -> {
+          List<byte[]> digests = new ArrayList<>();
+          MessageDigest member = level(members, depth);
+          while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            updateText(member, p);
+            JsonToken valueToken = p.nextToken();
+            if (valueToken.isNumeric() && "temperature".equals(name)) {
+              if (depth == 0) temperatureZero = p.getDecimalValue().signum() == 0;
+              else if (depth == 1 && inParameters) paramsTemperatureZero = p.getDecimalValue().signum() == 0;
+            }
+            member.update((byte) 0);
+            if (depth == 0) inParameters = "parameters".equals(name);
+            member.update(value(p, valueToken, depth + 1));
+            digests.add(member.digest());
+          }
+          digests.sort(Arrays::compare);
+          md.update((byte) '{');
+          for (byte[] digest : digests) md.update(digest);
+        }
+        case START_ARRAY -> {
+          md.update((byte) '[');
+          JsonToken element;
+          while ((element = p.nextToken()) != JsonToken.END_ARRAY) {
+            md.update(value(p, element, depth + 1));
+          }
+        }
+        case VALUE_STRING -> {
+          md.update((byte) 's');
+          updateText(md, p);
+        }
+        case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+          BigDecimal n = p.getDecimalValue();
+          md.update((byte) 'n');
+          md.update((n.signum() == 0 ? "0" : n.stripTrailingZeros().toPlainString())
+              .getBytes(StandardCharsets.US_ASCII));
+        }
+        case VALUE_TRUE -> md.update((byte) 't');
+        case VALUE_FALSE -> md.update((byte) 'f');
+        case VALUE_NULL -> md.update((byte) 'z');
+        default -> throw new IOException("Unexpected token " + token);
+      }
+      byte[] result = results.get(depth);
+      try {
+        md.digest(result, 0, DIGEST_BYTES);
+      } catch (DigestException e) {
+        throw new IllegalStateException(e);
+      }
+      return result;
+    }
+
+    private MessageDigest level(List<MessageDigest> digests, int depth) {
+      while (digests.size() <= depth) digests.add(sha256());
+      while (results.size() <= depth) results.add(new byte[DIGEST_BYTES]);
+      return digests.get(depth);
+    }
+
+    // The current token's text as UTF-8 (the same bytes as String.getBytes), without a String
+    private void updateText(MessageDigest md, JsonParser p) throws IOException {
+      char[] chars = p.getTextCharacters();
+      int end = p.getTextOffset() + p.getTextLength();
+      byte[] buf = utf8;
+      int n = 0;
+      for (int i = p.getTextOffset(); i < end; i++) {
+        if (n > buf.length - 4) {
+          md.update(buf, 0, n);
+          n = 0;
+        }
+        char c = chars[i];
+        if (c < 0x80) {
+          buf[n++] = (byte) c;
+        } else if (c < 0x800) {
+          buf[n++] = (byte) (0xC0 | c >> 6);
+          buf[n++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars[i + 1])) {
+          int cp = Character.toCodePoint(c, chars[++i]);
+          buf[n++] = (byte) (0xF0 | cp >> 18);
+          buf[n++] = (byte) (0x80 | cp >> 12 & 0x3F);
+          buf[n++] = (byte) (0x80 | cp >> 6 & 0x3F);
+          buf[n++] = (byte) (0x80 | cp & 0x3F);
+        } else if (Character.isSurrogate(c)) {
+          buf[n++] = '?'; // unpaired, as the JDK encoder replaces it
+        } else {
+          buf[n++] = (byte) (0xE0 | c >> 12);
+          buf[n++] = (byte) (0x80 | c >> 6 & 0x3F);
+          buf[n++] = (byte) (0x80 | c & 0x3F);
+        }
+      }
+      md.update(buf, 0, n);
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package com.example.demoapp;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Request header preparation for {@link LlmClient}. Everything that does not change per request
+ * ({@code Content-Type}, {@code Accept}, {@code app.extra-headers}) is validated and laid out once
+ * as name/value arrays when the properties are bound; per request they are added with plain
+ * {@code add} calls (copying a read-only {@link HttpHeaders} allocates a wrapper per entry), and
+ * then the IDs, the date and the bearer token.
+ *
+ * <p>The RFC 1123 date only changes once a second, so it is formatted once a second. IDs are
+ * random (version 4) UUIDs from {@link ThreadLocalRandom} instead of {@link UUID#randomUUID()},
+ * which draws from a shared {@code SecureRandom}; they only need to be unique, not unguessable.
+ */
+@Component
+public class RequestHeaders {
+
+  private record CachedDate(long epochSecond, String value) {}
+
+  private record CachedBearer(String token, String value) {}
+
+  private record Fixed(String[] names, String[] values) {}
+
+  private final Fixed json;
+  private final Fixed eventStream;
+  private volatile CachedDate date = new CachedDate(Long.MIN_VALUE, null);
+  private volatile CachedBearer bearer = new CachedBearer(null, null);
+
+  public RequestHeaders(AppProperties props) {
+    this.json = fixed(props.getExtraHeaders(), MediaType.APPLICATION_JSON);
+    this.eventStream = fixed(props.getExtraHeaders(), MediaType.TEXT_EVENT_STREAM);
+  }
+
+  /** Adds the headers that are the same for every request with this {@code accept}. */
+  public void addFixed(HttpHeaders headers, MediaType accept) {
+    Fixed fixed = MediaType.TEXT_EVENT_STREAM.equals(accept) ? eventStream : json;
+    String[] names = fixed.names();
+    String[] values = fixed.values();
+    for (int i = 0; i < names.length; i++) {
+      headers.add(names[i], values[i]);
+    }
+  }
+
+  /** Adds the fixed and per-request headers; {@code token} may be empty. */
+  public void apply(HttpHeaders headers, MediaType accept, String requestId, String token) {
+    addFixed(headers, accept);
+    headers.add("X-Request-Id", requestId);
+    headers.add("x-wf-request-date", date());
+    headers.add("x-correlation-id", newId());
+    if (StringUtils.hasText(token)) {
+      headers.add(HttpHeaders.AUTHORIZATION, bearer(token));
+    }
+  }
+
+  /** A random UUID string, without touching the shared {@code SecureRandom}. */
+  public String newId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long msb = (random.nextLong() & ~0xF000L) | 0x4000L; // version 4
+    long lsb = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48); // IETF variant
+    return new UUID(msb, lsb).toString();
+  }
+
+  /** Now as an RFC 1123 date in UTC, formatted at most once per second. */
+  public String date() {
+    long now = System.currentTimeMillis() / 1000;
+    CachedDate cached = date;
+    if (cached.epochSecond() != now) {
+      cached = new CachedDate(now,
+          DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochSecond(now).atOffset(ZoneOffset.UTC)));
+      date = cached;
+    }
+    return cached.value();
+  }
+
+  // The token changes about once an hour; keep its header value
+  private String bearer(String token) {
+    CachedBearer cached = bearer;
+    if (!token.equals(cached.token())) {
+      cached = new CachedBearer(token, "Bearer " + token);
+      bearer = cached;
+    }
+    return cached.value();
+  }
+
+  private static Fixed fixed(Map<String, String> extras, MediaType accept) {
+    List<String> names = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    names.add(HttpHeaders.CONTENT_TYPE);
+    values.add(MediaType.APPLICATION_JSON_VALUE);
+    names.add(HttpHeaders.ACCEPT);
+    values.add(accept.toString());
+    if (extras != null) {
+      for (var e : extras.entrySet()) {
+        if (StringUtils.hasText(e.getKey()) && e.getValue() != null) {
+          names.add(e.getKey());
+          values.add(e.getValue());
+        }
+      }
+    }
+    return new Fixed(names.toArray(String[]::new), values.toArray(String[]::new));
+  }
+}
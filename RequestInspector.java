@@ -0,0 +1,184 @@
+package com.example.demoapp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Pulls the fields we trace (model, first user prompt, provider) out of an outgoing
+ * request body in one streaming pass. No JsonNode tree is built, and parsing stops as
+ * soon as the model and the user message are known.
+ */
+@Component
+public class RequestInspector {
+
+  public record RequestInfo(String model, String prompt, String provider) {}
+
+  private final JsonFactory factory = new JsonFactory();
+
+  public RequestInfo inspect(String json, Map<String, String> headers) {
+    if (json == null) {
+      return new RequestInfo("unknown", null, orDefault(guessProviderFromHeaders(headers), "internal"));
+    }
+    try (JsonParser p = factory.createParser(json)) {
+      return read(p, () -> json, headers);
+    } catch (IOException e) {
+      // Same fallbacks as a body that fails readTree()
+      return new RequestInfo("unknown", json, orDefault(guessProviderFromHeaders(headers), "internal"));
+    }
+  }
+
+  /** Inspects the raw bytes; the result is cached on the body, so a reused body is read once. */
+  public RequestInfo inspect(ChatBody body, Map<String, String> headers) {
+    RequestInfo info = body.cachedInfo();
+    if (info != null) return info;
+
+    // body.bytes() is a read-only view and never has an accessible array
+    try (JsonParser p = body.array() != null
+        ? factory.createParser(body.array(), body.arrayOffset(), body.size())
+        : factory.createParser(new ByteBufferBackedInputStream(body.bytes()))) {
+      info = read(p, body::asString, headers);
+    } catch (IOException e) {
+      info = new RequestInfo("unknown", body.asString(), orDefault(guessProviderFromHeaders(headers), "internal"));
+    }
+    body.cacheInfo(info);
+    return info;
+  }
+
+  /** {@code raw} is only called when the prompt falls back to the whole body. */
+  private RequestInfo read(JsonParser p, Supplier<String> raw, Map<String, String> headers) throws IOException {
+    String headerProvider = guessProviderFromHeaders(headers);
+    String model = null;
+    String paramsModel = null;
+    String userPrompt = null;
+    String promptField = null;
+    String bodyProvider = null;
+
+    if (p.nextToken() != JsonToken.START_OBJECT) {
+      return new RequestInfo("unknown", raw.get(), orDefault(headerProvider, "internal"));
+    }
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken value = p.nextToken();
+      switch (field) {
+        case "model" -> model = scalarText(p, value);
+        case "parameters" -> {
+          if (value == JsonToken.START_OBJECT) paramsModel = readNestedModel(p);
+          else p.skipChildren();
+        }
+        case "messages" -> {
+          if (value == JsonToken.START_ARRAY) {
+            userPrompt = readFirstUserContent(p);
+            // Still need the model: step over the remaining messages
+            if (userPrompt != null && model == null) skipRestOfArray(p);
+          } else {
+            p.skipChildren();
+          }
+        }
+        case "prompt" -> promptField = scalarText(p, value);
+        case "provider" -> bodyProvider = scalarText(p, value);
+        default -> p.skipChildren();
+      }
+      // Everything after this point can only be a lower-priority fallback
+      if (model != null && userPrompt != null) break;
+    }
+
+    String resolvedModel = model != null ? model : orDefault(paramsModel, "unknown");
+    String resolvedPrompt = userPrompt != null ? userPrompt : promptField != null ? promptField : raw.get();
+    String resolvedProvider = headerProvider != null ? headerProvider : orDefault(bodyProvider, "internal");
+    return new RequestInfo(resolvedModel, resolvedPrompt, resolvedProvider);
+  }
+
+  // ---------- helpers ----------
+
+  private static String readNestedModel(JsonParser p) throws IOException {
+    String model = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken value = p.nextToken();
+      if (model == null && "model".equals(field)) model = scalarText(p, value);
+      else p.skipChildren();
+    }
+    return model;
+  }
+
+  /** Returns the content of the first {@code role=user} message, or null if there is none. */
+  private static String readFirstUserContent(JsonParser p) throws IOException {
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      if (p.currentToken() != JsonToken.START_OBJECT) {
+        p.skipChildren();
+        continue;
+      }
+      String role = null;
+      String content = null;
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.currentName();
+        JsonToken value = p.nextToken();
+        if ("role".equals(field)) {
+          role = scalarText(p, value);
+        } else if ("content".equals(field) && (role == null || "user".equals(role))) {
+          content = readContent(p, value);
+        } else {
+          // Skipping leaves non-user contents undecoded
+          p.skipChildren();
+        }
+      }
+      if ("user".equals(role)) return content != null ? content : "";
+    }
+    return null;
+  }
+
+  /** Plain string content, or the text parts of a multi-part content array joined together. */
+  private static String readContent(JsonParser p, JsonToken value) throws IOException {
+    if (value != JsonToken.START_ARRAY) {
+      String text = scalarText(p, value);
+      return text != null ? text : "";
+    }
+    StringBuilder sb = new StringBuilder();
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      if (p.currentToken() != JsonToken.START_OBJECT) {
+        p.skipChildren();
+        continue;
+      }
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.currentName();
+        JsonToken partValue = p.nextToken();
+        String text = "text".equals(field) ? scalarText(p, partValue) : null;
+        if (text != null) sb.append(text);
+        else p.skipChildren();
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void skipRestOfArray(JsonParser p) throws IOException {
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      p.skipChildren();
+    }
+  }
+
+  private static String scalarText(JsonParser p, JsonToken value) throws IOException {
+    if (value == null || value == JsonToken.VALUE_NULL) return null;
+    if (value.isScalarValue()) return p.getText();
+    p.skipChildren();
+    return null;
+  }
+
+  private static String guessProviderFromHeaders(Map<String, String> headers) {
+    if (headers == null) return null;
+    if (headers.containsKey("x-wf-client-id")) return "wf";
+    if (headers.containsKey("x-provider")) return headers.get("x-provider");
+    return null;
+  }
+
+  private static String orDefault(String value, String fallback) {
+    return value != null ? value : fallback;
+  }
+}
@@ -0,0 +1,116 @@
+package com.example.demoapp;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU + TTL cache of raw LLM responses keyed by model and canonical request hash
+ * ({@code app.cache.*}). Bounded by entry count and by total response bytes. With
+ * {@code off-heap} set, response bytes live in direct buffers so large completions do not
+ * count against the Java heap; they are decoded again on each hit.
+ */
+@Component
+public class ResponseCache {
+
+  private static final class Entry {
+    final byte[] heap;
+    final ByteBuffer offHeap;
+    final int size;
+    final long expiresAtNanos;
+
+    Entry(byte[] bytes, boolean offHeap, long expiresAtNanos) {
+      if (offHeap) {
+        this.offHeap = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+        this.heap = null;
+      } else {
+        this.heap = bytes;
+        this.offHeap = null;
+      }
+      this.size = bytes.length;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+
+    String text() {
+      return heap != null
+          ? new String(heap, StandardCharsets.UTF_8)
+          : StandardCharsets.UTF_8.decode(offHeap.duplicate()).toString();
+    }
+  }
+
+  private final AppProperties.Cache settings;
+  // Access-ordered: iteration starts at the least recently used entry
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes;
+
+  public ResponseCache(AppProperties props) {
+    this.settings = props.getCache();
+  }
+
+  public boolean isEnabled() {
+    return settings.isEnabled();
+  }
+
+  /** Whether a request with this fingerprint may be served from / stored in the cache. */
+  public boolean accepts(RequestFingerprint.Fingerprint fingerprint) {
+    return settings.isEnabled() && (fingerprint.deterministic() || !settings.isDeterministicOnly());
+  }
+
+  public static String key(String model, RequestFingerprint.Fingerprint fingerprint) {
+    return model + ':' + fingerprint.hash();
+  }
+
+  /** The cached response, or null on a miss or an expired entry. */
+  public String get(String key) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+      if (entry == null) return null;
+      if (System.nanoTime() - entry.expiresAtNanos >= 0) {
+        remove(key);
+        return null;
+      }
+    }
+    return entry.text();
+  }
+
+  public void put(String key, String response) {
+    byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > settings.getMaxBytes()) return;
+    // Copy to direct memory outside the lock
+    Entry entry = new Entry(bytes, settings.isOffHeap(), System.nanoTime() + settings.getTtl().toNanos());
+    synchronized (this) {
+      remove(key);
+      entries.put(key, entry);
+      totalBytes += entry.size;
+      evict();
+    }
+  }
+
+  private void evict() {
+    long now = System.nanoTime();
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext() && (entries.size() > settings.getMaxEntries() || totalBytes > settings.getMaxBytes())) {
+      Entry eldest = it.next().getValue();
+      totalBytes -= eldest.size;
+      it.remove();
+    }
+    // Drop expired entries from the cold end while we hold the lock
+    it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Entry e = it.next().getValue();
+      if (now - e.expiresAtNanos < 0) break;
+      totalBytes -= e.size;
+      it.remove();
+    }
+  }
+
+  private void remove(String key) {
+    Entry old = entries.remove(key);
+    if (old != null) totalBytes -= old.size;
+  }
+}
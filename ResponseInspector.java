@@ -0,0 +1,277 @@
+package com.example.demoapp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import io.opentelemetry.api.trace.Span;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads an LLM response once, streaming, for the assistant text and the token usage.
+ * Understands the OpenAI {@code choices} shape (message, legacy text, per-choice usage),
+ * {@code output_text}, and Gemini {@code candidates} / {@code usageMetadata}.
+ */
+@Component
+public class ResponseInspector {
+
+  public record Usage(long inputTokens, long outputTokens, long totalTokens) {}
+
+  /** {@code text} is null when no known shape matched; {@code usage} is null when absent. */
+  public record ResponseInfo(String text, Usage usage) {}
+
+  private final JsonFactory factory = new JsonFactory();
+  private final SpanAttributeBudget budget;
+
+  public ResponseInspector(SpanAttributeBudget budget) {
+    this.budget = budget;
+  }
+
+  public ResponseInfo inspect(String respJson) {
+    if (respJson == null) return new ResponseInfo(null, null);
+    try (JsonParser p = factory.createParser(respJson)) {
+      return read(p);
+    } catch (IOException e) {
+      return new ResponseInfo(null, null);
+    }
+  }
+
+  public ResponseInfo inspect(byte[] respJson) {
+    if (respJson == null) return new ResponseInfo(null, null);
+    try (JsonParser p = factory.createParser(respJson)) {
+      return read(p);
+    } catch (IOException e) {
+      return new ResponseInfo(null, null);
+    }
+  }
+
+  /**
+   * Sets the output message, {@code openinference.output_value} and {@code llm.usage.*} on the
+   * span from a single pass over the response. Falls back to the raw JSON as the output text.
+   */
+  public ResponseInfo applyTo(Span span, String respJson) {
+    return applyTo(budget.forSpan(span), respJson);
+  }
+
+  /** As above, drawing on a span's existing attribute budget. */
+  public ResponseInfo applyTo(SpanAttributeBudget.Writer attrs, String respJson) {
+    ResponseInfo info = inspect(respJson);
+    setOutput(attrs, info.text() != null ? info.text() : respJson);
+    setUsage(attrs.span(), info);
+    return info;
+  }
+
+  /** Sets the assistant output message, e.g. text rebuilt from a stream of chunks. */
+  public void setOutput(SpanAttributeBudget.Writer attrs, String assistantText) {
+    attrs.span().setAttribute("llm.output_messages.0.message.role", "assistant");
+    attrs.set("llm.output_messages.0.message.content", assistantText);
+    attrs.set("openinference.output_value", assistantText);
+  }
+
+  public void setUsage(Span span, ResponseInfo info) {
+    Usage usage = info.usage();
+    if (usage == null) return;
+
+    span.setAttribute("llm.usage.input_tokens", usage.inputTokens());
+    span.setAttribute("llm.usage.output_tokens", usage.outputTokens());
+    span.setAttribute("llm.usage.total_tokens", usage.totalTokens());
+
+    // Set BOTH naming styles for maximum compatibility
+    span.setAttribute("llm.usage.prompt_tokens", usage.inputTokens());
+    span.setAttribute("llm.usage.completion_tokens", usage.outputTokens());
+  }
+
+  // ---------- streaming readers ----------
+
+  private ResponseInfo read(JsonParser p) throws IOException {
+    if (p.nextToken() != JsonToken.START_OBJECT) return new ResponseInfo(null, null);
+
+    Choice choice = null;
+    String outputText = null;
+    String candidateText = null;
+    Usage usage = null;
+    Usage geminiUsage = null;
+
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken value = p.nextToken();
+      switch (field) {
+        case "choices" -> choice = value == JsonToken.START_ARRAY ? readFirstChoice(p) : skip(p);
+        case "output_text" -> outputText = scalarText(p, value);
+        case "candidates" -> candidateText = value == JsonToken.START_ARRAY ? readFirstCandidate(p) : skip(p);
+        case "usage" -> usage = value == JsonToken.START_OBJECT ? readUsage(p) : skip(p);
+        case "usageMetadata" -> geminiUsage = value == JsonToken.START_OBJECT ? readGeminiUsage(p) : skip(p);
+        default -> p.skipChildren();
+      }
+    }
+
+    String text = null;
+    if (choice != null && choice.text != null) text = choice.text;
+    else if (outputText != null) text = outputText;
+    else if (candidateText != null) text = candidateText;
+
+    if (usage == null && choice != null) usage = choice.usage;
+    if (usage == null) usage = geminiUsage;
+    return new ResponseInfo(text, usage);
+  }
+
+  private static final class Choice {
+    String text;
+    Usage usage;
+  }
+
+  /** Reads choices[0] (message.content, delta.content or legacy text) and skips the rest. */
+  private static Choice readFirstChoice(JsonParser p) throws IOException {
+    Choice choice = null;
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      if (choice != null || p.currentToken() != JsonToken.START_OBJECT) {
+        p.skipChildren();
+        continue;
+      }
+      choice = new Choice();
+      String messageText = null;
+      String legacyText = null;
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.currentName();
+        JsonToken value = p.nextToken();
+        switch (field) {
+          case "message", "delta" -> messageText = value == JsonToken.START_OBJECT ? readContentField(p) : skip(p);
+          case "text" -> legacyText = scalarText(p, value);
+          case "usage" -> choice.usage = value == JsonToken.START_OBJECT ? readUsage(p) : skip(p);
+          default -> p.skipChildren();
+        }
+      }
+      choice.text = messageText != null ? messageText : legacyText;
+    }
+    return choice;
+  }
+
+  /** Reads candidates[0].content as a string, or the joined {@code parts[].text}. */
+  private static String readFirstCandidate(JsonParser p) throws IOException {
+    String text = null;
+    boolean seenFirst = false;
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      if (seenFirst || p.currentToken() != JsonToken.START_OBJECT) {
+        p.skipChildren();
+        continue;
+      }
+      seenFirst = true;
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.currentName();
+        JsonToken value = p.nextToken();
+        if (!"content".equals(field)) {
+          p.skipChildren();
+        } else if (value == JsonToken.START_OBJECT) {
+          text = readParts(p);
+        } else {
+          text = scalarText(p, value);
+        }
+      }
+    }
+    return text;
+  }
+
+  /** Inside a message/delta object: returns {@code content}, joining text parts if it is an array. */
+  private static String readContentField(JsonParser p) throws IOException {
+    String content = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken value = p.nextToken();
+      if (!"content".equals(field)) {
+        p.skipChildren();
+      } else if (value == JsonToken.START_ARRAY) {
+        content = joinTextParts(p);
+      } else {
+        content = scalarText(p, value);
+      }
+    }
+    return content;
+  }
+
+  /** Inside a Gemini content object: joins {@code parts[].text}. */
+  private static String readParts(JsonParser p) throws IOException {
+    String text = null;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken value = p.nextToken();
+      if ("parts".equals(field) && value == JsonToken.START_ARRAY) text = joinTextParts(p);
+      else p.skipChildren();
+    }
+    return text;
+  }
+
+  private static String joinTextParts(JsonParser p) throws IOException {
+    StringBuilder sb = null;
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      if (p.currentToken() != JsonToken.START_OBJECT) {
+        p.skipChildren();
+        continue;
+      }
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.currentName();
+        JsonToken value = p.nextToken();
+        String text = "text".equals(field) ? scalarText(p, value) : null;
+        if (text == null) {
+          p.skipChildren();
+          continue;
+        }
+        if (sb == null) sb = new StringBuilder(text.length());
+        sb.append(text);
+      }
+    }
+    return sb != null ? sb.toString() : null;
+  }
+
+  private static Usage readUsage(JsonParser p) throws IOException {
+    long prompt = -1, input = -1, completion = -1, output = -1, total = -1;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken value = p.nextToken();
+      long n = value == JsonToken.VALUE_NUMBER_INT ? p.getLongValue() : -1;
+      p.skipChildren();
+      switch (field) {
+        case "prompt_tokens" -> prompt = n;
+        case "input_tokens" -> input = n;
+        case "completion_tokens" -> completion = n;
+        case "output_tokens" -> output = n;
+        case "total_tokens" -> total = n;
+        default -> { }
+      }
+    }
+    long in = input >= 0 ? input : Math.max(prompt, 0);
+    long out = output >= 0 ? output : Math.max(completion, 0);
+    return new Usage(in, out, total >= 0 ? total : in + out);
+  }
+
+  private static Usage readGeminiUsage(JsonParser p) throws IOException {
+    long in = 0, out = 0, total = -1;
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      JsonToken value = p.nextToken();
+      long n = value == JsonToken.VALUE_NUMBER_INT ? p.getLongValue() : 0;
+      p.skipChildren();
+      switch (field) {
+        case "promptTokenCount" -> in = n;
+        case "candidatesTokenCount" -> out = n;
+        case "totalTokenCount" -> total = n;
+        default -> { }
+      }
+    }
+    return new Usage(in, out, total >= 0 ? total : in + out);
+  }
+
+  private static String scalarText(JsonParser p, JsonToken value) throws IOException {
+    if (value == null || value == JsonToken.VALUE_NULL) return null;
+    if (value.isScalarValue()) return p.getText();
+    p.skipChildren();
+    return null;
+  }
+
+  private static <T> T skip(JsonParser p) throws IOException {
+    p.skipChildren();
+    return null;
+  }
+}
@@ -0,0 +1,116 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.trace.Span;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * UTF-8 byte budgets for the large string attributes on the {@code chat} span (prompt, output).
+ *
+ * <p>Each value is limited to {@code otel.attributes.max-value-bytes}, and all budgeted values on
+ * one span together to {@code otel.attributes.max-span-bytes}. Cuts fall on code point
+ * boundaries, end with {@link #MARKER}, and add {@code <key>.original_bytes}. A value that does not
+ * fit once the span's budget is too small to hold even the marker is dropped, with no attributes.
+ * Nothing is measured or copied when the span is not recording.
+ */
+@Component
+public class SpanAttributeBudget {
+
+  static final String MARKER = "…[truncated]";
+  private static final int MARKER_BYTES = utf8Length(MARKER, MARKER.length());
+
+  private final int maxValueBytes;
+  private final int maxSpanBytes;
+
+  public SpanAttributeBudget(
+      @Value("${otel.attributes.max-value-bytes:4000}") int maxValueBytes,
+      @Value("${otel.attributes.max-span-bytes:16384}") int maxSpanBytes) {
+    this.maxValueBytes = maxValueBytes;
+    this.maxSpanBytes = maxSpanBytes;
+  }
+
+  /** A writer that tracks what is left of this span's budget; use one per span. */
+  public Writer forSpan(Span span) {
+    return span.isRecording() ? new Writer(span, maxSpanBytes) : new Writer(span, -1);
+  }
+
+  public final class Writer {
+    private final Span span;
+    private int remaining; // -1: span is not recording
+
+    private Writer(Span span, int remaining) {
+      this.span = span;
+      this.remaining = remaining;
+    }
+
+    public Span span() {
+      return span;
+    }
+
+    public void set(String key, String value) {
+      if (remaining < 0 || value == null) return;
+
+      int limit = Math.min(maxValueBytes, remaining);
+      int cut = cutIndex(value, limit);
+      if (cut == value.length()) {
+        span.setAttribute(key, value);
+        remaining -= utf8Length(value, cut);
+        return;
+      }
+
+      // Budget exhausted: a marker alone would already exceed it
+      if (limit < MARKER_BYTES) return;
+
+      // Over budget: keep as many whole code points as fit next to the marker
+      cut = cutIndex(value, limit - MARKER_BYTES);
+      String truncated = value.substring(0, cut) + MARKER;
+      span.setAttribute(key, truncated);
+      span.setAttribute(key + ".original_bytes", utf8Length(value, value.length()));
+      remaining -= utf8Length(truncated, truncated.length());
+    }
+  }
+
+  /** Largest char index whose prefix fits in {@code maxBytes} without splitting a code point. */
+  static int cutIndex(String s, int maxBytes) {
+    int bytes = 0;
+    int i = 0;
+    while (i < s.length()) {
+      char c = s.charAt(i);
+      int width;
+      int chars = 1;
+      if (c < 0x80) {
+        width = 1;
+      } else if (c < 0x800) {
+        width = 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+        width = 4;
+        chars = 2;
+      } else {
+        width = 3;
+      }
+      if (bytes + width > maxBytes) return i;
+      bytes += width;
+      i += chars;
+    }
+    return i;
+  }
+
+  static int utf8Length(String s, int end) {
+    int bytes = 0;
+    for (int i = 0; i < end; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        bytes += 1;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+        bytes += 4;
+        i++;
+      } else {
+        bytes += 3;
+      }
+    }
+    return bytes;
+  }
+}
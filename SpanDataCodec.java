@@ -0,0 +1,371 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.AttributeType;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.TraceStateBuilder;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfoBuilder;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of a finished span for the disk spool. Everything an OTLP exporter reads
+ * is kept (contexts with their trace state, resource, scope, attributes, events, links, status,
+ * counts).
+ *
+ * <p>Records outlive the process that wrote them, so each starts with a format version and
+ * enums are stored as fixed codes rather than ordinals. {@link #decode} rejects a version it does
+ * not know, which the spool counts as a corrupt record.
+ */
+final class SpanDataCodec {
+
+  // 1: first versioned format. Unversioned records start with a zero byte and are rejected.
+  private static final byte VERSION = 1;
+
+  private SpanDataCodec() {}
+
+  static byte[] encode(SpanData span) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(VERSION);
+      writeContext(out, span.getSpanContext());
+      writeContext(out, span.getParentSpanContext());
+      writeAttributes(out, span.getResource().getAttributes());
+      writeNullable(out, span.getResource().getSchemaUrl());
+      InstrumentationScopeInfo scope = span.getInstrumentationScopeInfo();
+      writeString(out, scope.getName());
+      writeNullable(out, scope.getVersion());
+      writeNullable(out, scope.getSchemaUrl());
+
+      writeString(out, span.getName());
+      out.writeByte(kindCode(span.getKind()));
+      out.writeLong(span.getStartEpochNanos());
+      out.writeLong(span.getEndEpochNanos());
+      out.writeBoolean(span.hasEnded());
+      out.writeByte(statusCode(span.getStatus().getStatusCode()));
+      writeString(out, span.getStatus().getDescription());
+      writeAttributes(out, span.getAttributes());
+      out.writeInt(span.getTotalAttributeCount());
+
+      out.writeInt(span.getEvents().size());
+      for (EventData event : span.getEvents()) {
+        writeString(out, event.getName());
+        out.writeLong(event.getEpochNanos());
+        writeAttributes(out, event.getAttributes());
+        out.writeInt(event.getTotalAttributeCount());
+      }
+      out.writeInt(span.getTotalRecordedEvents());
+
+      out.writeInt(span.getLinks().size());
+      for (LinkData link : span.getLinks()) {
+        writeContext(out, link.getSpanContext());
+        writeAttributes(out, link.getAttributes());
+        out.writeInt(link.getTotalAttributeCount());
+      }
+      out.writeInt(span.getTotalRecordedLinks());
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // in-memory stream
+    }
+    return bytes.toByteArray();
+  }
+
+  static SpanData decode(ByteBuffer in) {
+    byte format = in.get();
+    if (format != VERSION) throw new IllegalArgumentException("Unknown spool record version " + format);
+    SpanContext context = readContext(in);
+    SpanContext parent = readContext(in);
+    Attributes resourceAttrs = readAttributes(in);
+    String resourceSchema = readNullable(in);
+    Resource resource = resourceSchema != null
+        ? Resource.create(resourceAttrs, resourceSchema)
+        : Resource.create(resourceAttrs);
+    InstrumentationScopeInfoBuilder scope = InstrumentationScopeInfo.builder(readString(in));
+    String version = readNullable(in);
+    String scopeSchema = readNullable(in);
+    if (version != null) scope.setVersion(version);
+    if (scopeSchema != null) scope.setSchemaUrl(scopeSchema);
+
+    String name = readString(in);
+    SpanKind kind = kind(in.get());
+    long start = in.getLong();
+    long end = in.getLong();
+    boolean ended = in.get() != 0;
+    StatusCode code = status(in.get());
+    StatusData status = StatusData.create(code, readString(in));
+    Attributes attributes = readAttributes(in);
+    int totalAttributes = in.getInt();
+
+    int eventCount = in.getInt();
+    List<EventData> events = new ArrayList<>(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      String eventName = readString(in);
+      long epochNanos = in.getLong();
+      Attributes eventAttrs = readAttributes(in);
+      events.add(EventData.create(epochNanos, eventName, eventAttrs, in.getInt()));
+    }
+    int totalEvents = in.getInt();
+
+    int linkCount = in.getInt();
+    List<LinkData> links = new ArrayList<>(linkCount);
+    for (int i = 0; i < linkCount; i++) {
+      SpanContext linked = readContext(in);
+      Attributes linkAttrs = readAttributes(in);
+      links.add(LinkData.create(linked, linkAttrs, in.getInt()));
+    }
+    int totalLinks = in.getInt();
+
+    return new SpooledSpan(name, kind, context, parent, status, start, end, ended, attributes,
+        totalAttributes, events, totalEvents, links, totalLinks, resource, scope.build());
+  }
+
+  // ---------- contexts ----------
+
+  private static void writeContext(DataOutputStream out, SpanContext ctx) throws IOException {
+    writeString(out, ctx.getTraceId());
+    writeString(out, ctx.getSpanId());
+    out.writeByte(ctx.getTraceFlags().asByte());
+    out.writeBoolean(ctx.isRemote());
+    TraceState state = ctx.getTraceState();
+    out.writeInt(state.size());
+    IOException[] failure = new IOException[1];
+    state.forEach((key, value) -> {
+      if (failure[0] != null) return;
+      try {
+        writeString(out, key);
+        writeString(out, value);
+      } catch (IOException e) {
+        failure[0] = e;
+      }
+    });
+    if (failure[0] != null) throw failure[0];
+  }
+
+  private static SpanContext readContext(ByteBuffer in) {
+    String traceId = readString(in);
+    String spanId = readString(in);
+    TraceFlags flags = TraceFlags.fromByte(in.get());
+    boolean remote = in.get() != 0;
+    int entries = in.getInt();
+    TraceState state = TraceState.getDefault();
+    if (entries > 0) {
+      TraceStateBuilder builder = TraceState.builder();
+      for (int i = 0; i < entries; i++) builder.put(readString(in), readString(in));
+      state = builder.build();
+    }
+    return remote
+        ? SpanContext.createFromRemoteParent(traceId, spanId, flags, state)
+        : SpanContext.create(traceId, spanId, flags, state);
+  }
+
+  // ---------- enum codes (stable across SDK versions, unlike ordinals) ----------
+
+  private static int kindCode(SpanKind kind) {
+    return switch (kind) {
+      case INTERNAL -> 0;
+      case SERVER -> 1;
+      case CLIENT -> 2;
+      case PRODUCER -> 3;
+      case CONSUMER -> 4;
+    };
+  }
+
+  private static SpanKind kind(byte code) {
+    return switch (code) {
+      case 0 -> SpanKind.INTERNAL;
+      case 1 -> SpanKind.SERVER;
+      case 2 -> SpanKind.CLIENT;
+      case 3 -> SpanKind.PRODUCER;
+      case 4 -> SpanKind.CONSUMER;
+      default -> throw new IllegalArgumentException("Unknown span kind " + code);
+    };
+  }
+
+  private static int statusCode(StatusCode status) {
+    return switch (status) {
+      case UNSET -> 0;
+      case OK -> 1;
+      case ERROR -> 2;
+    };
+  }
+
+  private static StatusCode status(byte code) {
+    return switch (code) {
+      case 0 -> StatusCode.UNSET;
+      case 1 -> StatusCode.OK;
+      case 2 -> StatusCode.ERROR;
+      default -> throw new IllegalArgumentException("Unknown status code " + code);
+    };
+  }
+
+  private static int typeCode(AttributeType type) {
+    return switch (type) {
+      case STRING -> 0;
+      case BOOLEAN -> 1;
+      case LONG -> 2;
+      case DOUBLE -> 3;
+      case STRING_ARRAY -> 4;
+      case BOOLEAN_ARRAY -> 5;
+      case LONG_ARRAY -> 6;
+      case DOUBLE_ARRAY -> 7;
+    };
+  }
+
+  private static AttributeType type(byte code) {
+    return switch (code) {
+      case 0 -> AttributeType.STRING;
+      case 1 -> AttributeType.BOOLEAN;
+      case 2 -> AttributeType.LONG;
+      case 3 -> AttributeType.DOUBLE;
+      case 4 -> AttributeType.STRING_ARRAY;
+      case 5 -> AttributeType.BOOLEAN_ARRAY;
+      case 6 -> AttributeType.LONG_ARRAY;
+      case 7 -> AttributeType.DOUBLE_ARRAY;
+      default -> throw new IllegalArgumentException("Unknown attribute type " + code);
+    };
+  }
+
+  // ---------- attributes ----------
+
+  private static void writeAttributes(DataOutputStream out, Attributes attrs) throws IOException {
+    out.writeInt(attrs.size());
+    IOException[] failure = new IOException[1];
+    attrs.forEach((key, value) -> {
+      if (failure[0] != null) return;
+      try {
+        writeString(out, key.getKey());
+        out.writeByte(typeCode(key.getType()));
+        switch (key.getType()) {
+          case STRING -> writeString(out, (String) value);
+          case BOOLEAN -> out.writeBoolean((Boolean) value);
+          case LONG -> out.writeLong((Long) value);
+          case DOUBLE -> out.writeDouble((Double) value);
+          case STRING_ARRAY, BOOLEAN_ARRAY, LONG_ARRAY, DOUBLE_ARRAY -> {
+            List<?> list = (List<?>) value;
+            out.writeInt(list.size());
+            for (Object element : list) {
+              switch (key.getType()) {
+                case STRING_ARRAY -> writeString(out, (String) element);
+                case BOOLEAN_ARRAY -> out.writeBoolean((Boolean) element);
+                case LONG_ARRAY -> out.writeLong((Long) element);
+                default -> out.writeDouble((Double) element);
+              }
+            }
+          }
+        }
+      } catch (IOException e) {
+        failure[0] = e;
+      }
+    });
+    if (failure[0] != null) throw failure[0];
+  }
+
+  private static Attributes readAttributes(ByteBuffer in) {
+    int count = in.getInt();
+    if (count == 0) return Attributes.empty();
+    AttributesBuilder builder = Attributes.builder();
+    for (int i = 0; i < count; i++) {
+      String key = readString(in);
+      AttributeType type = type(in.get());
+      switch (type) {
+        case STRING -> builder.put(AttributeKey.stringKey(key), readString(in));
+        case BOOLEAN -> builder.put(AttributeKey.booleanKey(key), in.get() != 0);
+        case LONG -> builder.put(AttributeKey.longKey(key), in.getLong());
+        case DOUBLE -> builder.put(AttributeKey.doubleKey(key), in.getDouble());
+        case STRING_ARRAY -> {
+          List<String> list = new ArrayList<>();
+          for (int n = in.getInt(); n > 0; n--) list.add(readString(in));
+          builder.put(AttributeKey.stringArrayKey(key), list);
+        }
+        case BOOLEAN_ARRAY -> {
+          List<Boolean> list = new ArrayList<>();
+          for (int n = in.getInt(); n > 0; n--) list.add(in.get() != 0);
+          builder.put(AttributeKey.booleanArrayKey(key), list);
+        }
+        case LONG_ARRAY -> {
+          List<Long> list = new ArrayList<>();
+          for (int n = in.getInt(); n > 0; n--) list.add(in.getLong());
+          builder.put(AttributeKey.longArrayKey(key), list);
+        }
+        case DOUBLE_ARRAY -> {
+          List<Double> list = new ArrayList<>();
+          for (int n = in.getInt(); n > 0; n--) list.add(in.getDouble());
+          builder.put(AttributeKey.doubleArrayKey(key), list);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  // ---------- strings (length-prefixed UTF-8; writeUTF stops at 64 KB) ----------
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static void writeNullable(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) writeString(out, s);
+  }
+
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return s;
+  }
+
+  private static String readNullable(ByteBuffer in) {
+    return in.get() != 0 ? readString(in) : null;
+  }
+
+  /** A span read back from the spool. */
+  private record SpooledSpan(
+      String name, SpanKind kind, SpanContext context, SpanContext parent, StatusData status,
+      long start, long end, boolean ended, Attributes attributes, int totalAttributes,
+      List<EventData> events, int totalEvents, List<LinkData> links, int totalLinks,
+      Resource resource, InstrumentationScopeInfo scope) implements SpanData {
+
+    @Override public String getName() { return name; }
+    @Override public SpanKind getKind() { return kind; }
+    @Override public SpanContext getSpanContext() { return context; }
+    @Override public SpanContext getParentSpanContext() { return parent; }
+    @Override public StatusData getStatus() { return status; }
+    @Override public long getStartEpochNanos() { return start; }
+    @Override public Attributes getAttributes() { return attributes; }
+    @Override public List<EventData> getEvents() { return events; }
+    @Override public List<LinkData> getLinks() { return links; }
+    @Override public long getEndEpochNanos() { return end; }
+    @Override public boolean hasEnded() { return ended; }
+    @Override public int getTotalRecordedEvents() { return totalEvents; }
+    @Override public int getTotalRecordedLinks() { return totalLinks; }
+    @Override public int getTotalAttributeCount() { return totalAttributes; }
+    @Override public InstrumentationScopeInfo getInstrumentationScopeInfo() { return scope; }
+    @Override public Resource getResource() { return resource; }
+
+    // Still abstract on older SDKs
+    @SuppressWarnings("deprecation")
+    public io.opentelemetry.sdk.common.InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+      return io.opentelemetry.sdk.common.InstrumentationLibraryInfo.create(scope.getName(), scope.getVersion());
+    }
+  }
+}
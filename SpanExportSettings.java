@@ -0,0 +1,47 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Batch export settings for the {@code TelemetryConfig} variants: {@code otel.bsp.*}, each
+ * overridable as {@code arize.bsp.*}. Defaults match the SDK's {@code BatchSpanProcessor}.
+ */
+@Component
+public class SpanExportSettings {
+
+  private final BatchExportProcessor.Settings settings;
+  private final List<BatchExportProcessor> processors = new CopyOnWriteArrayList<>();
+
+  public SpanExportSettings(
+      @Value("${arize.bsp.max-queue-size:${otel.bsp.max-queue-size:2048}}") int maxQueueSize,
+      @Value("${arize.bsp.max-export-batch-size:${otel.bsp.max-export-batch-size:512}}") int maxExportBatchSize,
+      @Value("${arize.bsp.schedule-delay:${otel.bsp.schedule-delay:5s}}") Duration scheduleDelay,
+      @Value("${arize.bsp.export-timeout:${otel.bsp.export-timeout:30s}}") Duration exportTimeout,
+      @Value("${arize.bsp.adaptive:${otel.bsp.adaptive:false}}") boolean adaptive) {
+    this.settings = new BatchExportProcessor.Settings(
+        maxQueueSize, Math.min(maxExportBatchSize, maxQueueSize), scheduleDelay, exportTimeout, adaptive);
+  }
+
+  /** A batching processor for {@code exporter}; {@code name} tags its metrics. */
+  public SpanProcessor processor(String name, SpanExporter exporter) {
+    BatchExportProcessor processor = new BatchExportProcessor(name, exporter, settings);
+    processors.add(processor);
+    return processor;
+  }
+
+  /** Registers queue and export metrics of every processor built so far. */
+  public void bindMetrics(OpenTelemetry otel) {
+    Meter meter = otel.getMeter("com.example.demoapp");
+    for (BatchExportProcessor processor : processors) processor.bindMetrics(meter);
+  }
+}
@@ -0,0 +1,61 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Optional disk spool in front of each span exporter ({@code otel.spool.*}, off by default).
+ * Each destination gets its own directory under {@code otel.spool.dir}.
+ */
+@Component
+public class SpanSpool {
+
+  private final boolean enabled;
+  private final Path dir;
+  private final int segmentBytes;
+  private final long maxBytes;
+  private final int replayRate;
+  private final int replayBatch;
+  private final Duration exportTimeout;
+  private final List<SpoolingSpanExporter> spools = new CopyOnWriteArrayList<>();
+
+  public SpanSpool(
+      @Value("${otel.spool.enabled:false}") boolean enabled,
+      @Value("${otel.spool.dir:${java.io.tmpdir}/span-spool}") Path dir,
+      @Value("${otel.spool.segment-bytes:16777216}") int segmentBytes,
+      @Value("${otel.spool.max-bytes:536870912}") long maxBytes,
+      @Value("${otel.spool.replay-rate:2000}") int replayRate,
+      @Value("${otel.spool.replay-batch:512}") int replayBatch,
+      @Value("${otel.spool.export-timeout:30s}") Duration exportTimeout) {
+    this.enabled = enabled;
+    this.dir = dir;
+    this.segmentBytes = segmentBytes;
+    this.maxBytes = maxBytes;
+    this.replayRate = Math.max(1, replayRate);
+    this.replayBatch = Math.max(1, replayBatch);
+    this.exportTimeout = exportTimeout;
+  }
+
+  /** {@code exporter} itself when the spool is off. */
+  public SpanExporter wrap(String name, SpanExporter exporter) {
+    if (!enabled) return exporter;
+    SpoolingSpanExporter spool = new SpoolingSpanExporter(name, exporter, new SpoolingSpanExporter.Settings(
+        dir.resolve(name), segmentBytes, maxBytes, replayRate, replayBatch, exportTimeout));
+    spools.add(spool);
+    return spool;
+  }
+
+  public void bindMetrics(OpenTelemetry otel) {
+    Meter meter = otel.getMeter("com.example.demoapp");
+    for (SpoolingSpanExporter spool : spools) spool.bindMetrics(meter);
+  }
+}
@@ -0,0 +1,492 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead spool between the batch processor and the real exporter. {@link #export} only
+ * appends the spans to a memory-mapped segment file and returns; a replay thread sends them on
+ * to the delegate in order, at most {@code replayRate} spans per second, and retries with
+ * backoff while the endpoint is down.
+ *
+ * <p>Segments are fixed-size files of {@code [length][crc32][span]} records. Fully replayed
+ * segments are deleted, the read position survives restarts in {@code cursor}, and when the
+ * spool reaches {@code maxBytes} the oldest segment is dropped (and counted) to make room.
+ *
+ * <p>Replay checks every record's checksum. A bad record makes the rest of its segment
+ * unreadable, so that rest is skipped and counted in {@code otel.spool.records.corrupt}, as is a
+ * record the codec cannot decode. The directory is locked for the life of the exporter, so a
+ * second process pointed at the same spool fails at startup instead of corrupting it.
+ */
+final class SpoolingSpanExporter implements SpanExporter {
+
+  record Settings(Path dir, int segmentBytes, long maxBytes, int replayRate, int replayBatch,
+                  Duration exportTimeout) {}
+
+  private static final int HEADER = 8; // length + crc32
+  private static final Pattern SEGMENT = Pattern.compile("segment-(\\d+)\\.spool");
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long MIN_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+  private static final AttributeKey<String> DESTINATION = AttributeKey.stringKey("destination");
+  private static final Log LOG = LogFactory.getLog(SpoolingSpanExporter.class);
+  private static final Duration LOG_INTERVAL = Duration.ofMinutes(1);
+
+  private final String name;
+  private final SpanExporter delegate;
+  private final Settings settings;
+  private final int maxSegments;
+  private final FileChannel lockChannel;
+  private final FileLock lock;
+
+  // All guarded by this
+  private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+  private final MappedByteBuffer cursor;
+  private long writeSeq;
+  private int writePos;
+  private long readSeq;
+  private int readPos;
+  private long backlog;
+  // End of the batch the replayer is exporting; a full spool may drop its records from disk
+  private boolean inFlight;
+  private long inFlightSeq;
+  private int inFlightPos;
+  private long inFlightLost; // records of that batch whose segment was dropped meanwhile
+
+  private final LongAdder droppedSpans = new LongAdder();
+  private final LongAdder replayedSpans = new LongAdder();
+  private final LongAdder replayFailures = new LongAdder();
+  private final LongAdder corruptRecords = new LongAdder();
+
+  private final RateLimitedLog fullLog = new RateLimitedLog(LOG, LOG_INTERVAL);
+  private final RateLimitedLog replayLog = new RateLimitedLog(LOG, LOG_INTERVAL);
+  private final RateLimitedLog corruptLog = new RateLimitedLog(LOG, LOG_INTERVAL);
+  private final RateLimitedLog deleteLog = new RateLimitedLog(LOG, LOG_INTERVAL);
+
+  private final Thread replayer;
+  private volatile boolean shutdown;
+
+  SpoolingSpanExporter(String name, SpanExporter delegate, Settings settings) {
+    this.name = name;
+    this.delegate = delegate;
+    this.settings = settings;
+    this.maxSegments = (int) Math.max(2, settings.maxBytes() / settings.segmentBytes());
+    try {
+      Files.createDirectories(settings.dir());
+      this.lockChannel = FileChannel.open(settings.dir().resolve("lock"),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      this.lock = tryLock(lockChannel);
+      if (lock == null) {
+        lockChannel.close();
+        throw new IllegalStateException("Span spool " + settings.dir() + " is in use by another exporter;"
+            + " give each process its own otel.spool.dir");
+      }
+      this.cursor = map(settings.dir().resolve("cursor"), 16);
+      recover();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open span spool in " + settings.dir(), e);
+    }
+    this.replayer = new Thread(this::replay, "span-spool-" + name);
+    this.replayer.setDaemon(true);
+    this.replayer.start();
+  }
+
+  /** Registers spool metrics ({@code otel.spool.*}, tagged with the destination name). */
+  void bindMetrics(Meter meter) {
+    Attributes attrs = Attributes.of(DESTINATION, name);
+    meter.gaugeBuilder("otel.spool.backlog").ofLongs()
+        .setDescription("Spans spooled but not yet exported")
+        .buildWithCallback(m -> m.record(backlog(), attrs));
+    meter.gaugeBuilder("otel.spool.size").ofLongs()
+        .setUnit("By")
+        .buildWithCallback(m -> m.record(diskBytes(), attrs));
+    meter.counterBuilder("otel.spool.spans.dropped")
+        .setDescription("Spans lost to the disk limit")
+        .buildWithCallback(m -> m.record(droppedSpans.sum(), attrs));
+    meter.counterBuilder("otel.spool.spans.replayed")
+        .buildWithCallback(m -> m.record(replayedSpans.sum(), attrs));
+    meter.counterBuilder("otel.spool.replay.failures")
+        .buildWithCallback(m -> m.record(replayFailures.sum(), attrs));
+    meter.counterBuilder("otel.spool.records.corrupt")
+        .setDescription("Spooled records skipped because they failed the checksum or could not be decoded")
+        .buildWithCallback(m -> m.record(corruptRecords.sum(), attrs));
+  }
+
+  @Override
+  public CompletableResultCode export(Collection<SpanData> spans) {
+    if (shutdown) return CompletableResultCode.ofFailure();
+    List<byte[]> records = new ArrayList<>(spans.size());
+    for (SpanData span : spans) records.add(SpanDataCodec.encode(span));
+    synchronized (this) {
+      for (byte[] record : records) append(record);
+    }
+    LockSupport.unpark(replayer);
+    return CompletableResultCode.ofSuccess();
+  }
+
+  /** Waits (up to the export timeout) for the backlog to drain, then flushes the delegate. */
+  @Override
+  public CompletableResultCode flush() {
+    long deadline = System.nanoTime() + settings.exportTimeout().toNanos();
+    while (backlog() > 0 && System.nanoTime() < deadline) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    return backlog() == 0 ? delegate.flush() : CompletableResultCode.ofFailure();
+  }
+
+  /** Stops replaying; anything still spooled is sent after the next start. */
+  @Override
+  public CompletableResultCode shutdown() {
+    shutdown = true;
+    LockSupport.unpark(replayer);
+    try {
+      replayer.join(settings.exportTimeout().toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      segments.values().forEach(MappedByteBuffer::force);
+      cursor.force();
+    }
+    try {
+      lock.release();
+      lockChannel.close();
+    } catch (IOException e) {
+      LOG.warn("Could not unlock span spool " + settings.dir(), e);
+    }
+    return delegate.shutdown();
+  }
+
+  // ---------- writing ----------
+
+  private void append(byte[] record) {
+    int need = HEADER + record.length;
+    if (need > settings.segmentBytes()) {
+      droppedSpans.increment(); // larger than a whole segment
+      return;
+    }
+    MappedByteBuffer segment = segments.get(writeSeq);
+    if (writePos + need > segment.capacity()) {
+      segment = roll();
+    }
+    CRC32 crc = new CRC32();
+    crc.update(record);
+    segment.put(writePos + HEADER, record);
+    segment.putInt(writePos + 4, (int) crc.getValue());
+    segment.putInt(writePos, record.length); // length last: a zero length marks the end
+    writePos += need;
+    backlog++;
+  }
+
+  private MappedByteBuffer roll() {
+    writeSeq++;
+    writePos = 0;
+    MappedByteBuffer segment;
+    try {
+      segment = map(segmentPath(writeSeq), settings.segmentBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    segments.put(writeSeq, segment);
+
+    while (segments.size() > maxSegments) {
+      long oldest = segments.firstKey();
+      if (oldest >= readSeq) {
+        MappedByteBuffer dropped = segments.get(oldest);
+        int from = oldest == readSeq ? readPos : 0;
+        // Records already in the in-flight batch are only lost if that export fails
+        int sending = !inFlight || inFlightSeq < oldest ? from
+            : inFlightSeq == oldest ? Math.max(from, inFlightPos)
+            : dropped.capacity();
+        inFlightLost += countRecords(dropped, from, sending);
+        long lost = countRecords(dropped, sending, Integer.MAX_VALUE);
+        droppedSpans.add(lost);
+        backlog -= lost;
+        fullLog.warn("Span spool %s is full; dropped %d spans", name, lost);
+      }
+      delete(oldest);
+      if (readSeq <= oldest) {
+        readSeq = segments.firstKey();
+        readPos = 0;
+        saveCursor();
+      }
+    }
+    return segment;
+  }
+
+  // ---------- replay ----------
+
+  /** {@code skipped}: records from a corrupt stretch that are dropped rather than sent. */
+  private record Batch(List<byte[]> records, long endSeq, int endPos, long skipped) {}
+
+  private void replay() {
+    long backoff = MIN_BACKOFF_NANOS;
+    while (!shutdown) {
+      try {
+        Batch batch;
+        synchronized (this) {
+          batch = readBatch(settings.replayBatch());
+          if (batch.records().isEmpty()) {
+            if (batch.skipped() > 0) commit(batch);
+          } else {
+            inFlight = true;
+            inFlightSeq = batch.endSeq();
+            inFlightPos = batch.endPos();
+          }
+        }
+        if (batch.records().isEmpty()) {
+          LockSupport.parkNanos(this, IDLE_NANOS);
+          continue;
+        }
+
+        List<SpanData> spans = new ArrayList<>(batch.records().size());
+        for (byte[] record : batch.records()) {
+          try {
+            spans.add(SpanDataCodec.decode(ByteBuffer.wrap(record)));
+          } catch (RuntimeException e) {
+            // Checksum matched but the codec cannot read it (e.g. written by another version)
+            corruptRecords.increment();
+          }
+        }
+
+        long start = System.nanoTime();
+        boolean success = spans.isEmpty() || delegate.export(spans)
+            .join(settings.exportTimeout().toNanos(), TimeUnit.NANOSECONDS)
+            .isSuccess();
+        if (!success) {
+          synchronized (this) {
+            abandon();
+          }
+          replayFailures.increment();
+          LockSupport.parkNanos(this, backoff);
+          backoff = Math.min(MAX_BACKOFF_NANOS, backoff * 2);
+          continue;
+        }
+        backoff = MIN_BACKOFF_NANOS;
+        synchronized (this) {
+          commit(batch);
+        }
+        replayedSpans.add(spans.size());
+
+        // Rate limit: this batch may not take less than spans / replayRate seconds
+        long minNanos = spans.size() * 1_000_000_000L / settings.replayRate();
+        long left = minNanos - (System.nanoTime() - start);
+        if (left > 0) LockSupport.parkNanos(this, left);
+      } catch (Throwable t) {
+        // Whatever went wrong, the replayer must survive it or the spool only ever fills up
+        synchronized (this) {
+          abandon();
+        }
+        replayFailures.increment();
+        replayLog.warn(t, "Span spool %s replay failed", name);
+        LockSupport.parkNanos(this, backoff);
+        backoff = Math.min(MAX_BACKOFF_NANOS, backoff * 2);
+      }
+    }
+  }
+
+  private Batch readBatch(int max) {
+    List<byte[]> records = new ArrayList<>();
+    long skipped = 0;
+    long seq = readSeq;
+    int pos = readPos;
+    CRC32 crc = new CRC32();
+    while (records.size() < max) {
+      MappedByteBuffer segment = segments.get(seq);
+      int limit = seq == writeSeq ? writePos : segment.capacity();
+      int length = pos + HEADER <= limit ? segment.getInt(pos) : 0;
+      boolean intact = length > 0 && length <= limit - pos - HEADER;
+      if (intact) {
+        crc.reset();
+        crc.update(segment.slice(pos + HEADER, length));
+        intact = (int) crc.getValue() == segment.getInt(pos + 4);
+      }
+      if (length != 0 && !intact) {
+        // Nothing after a bad record can be trusted to start on a record boundary
+        long lost = Math.max(1, countRecords(segment, pos, limit));
+        skipped += lost;
+        corruptRecords.add(lost);
+        corruptLog.warn("Span spool %s: corrupt record in segment %d at %d; skipped %d records",
+            name, seq, pos, lost);
+        pos = limit;
+        length = 0;
+      }
+      if (length == 0) {
+        Long next = seq == writeSeq ? null : segments.higherKey(seq);
+        if (next == null) break;
+        seq = next;
+        pos = 0;
+        continue;
+      }
+      byte[] record = new byte[length];
+      segment.get(pos + HEADER, record);
+      records.add(record);
+      pos += HEADER + length;
+    }
+    return new Batch(records, seq, pos, skipped);
+  }
+
+  private void commit(Batch batch) {
+    // A full spool may have moved the cursor to a later segment start while this batch was out
+    if (batch.endSeq() > readSeq || batch.endSeq() == readSeq && batch.endPos() > readPos) {
+      readSeq = batch.endSeq();
+      readPos = batch.endPos();
+    }
+    backlog -= batch.records().size() + batch.skipped();
+    inFlight = false;
+    inFlightLost = 0;
+    // Compaction: segments before the cursor are fully replayed
+    while (segments.firstKey() < readSeq) delete(segments.firstKey());
+    saveCursor();
+  }
+
+  /** The in-flight export failed: whatever of it a full spool dropped from disk is now lost. */
+  private void abandon() {
+    if (!inFlight) return;
+    droppedSpans.add(inFlightLost);
+    backlog -= inFlightLost;
+    inFlight = false;
+    inFlightLost = 0;
+  }
+
+  // ---------- recovery ----------
+
+  private void recover() throws IOException {
+    try (Stream<Path> files = Files.list(settings.dir())) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Matcher m = SEGMENT.matcher(file.getFileName().toString());
+        if (m.matches()) segments.put(Long.parseLong(m.group(1)), map(file, (int) Files.size(file)));
+      }
+    }
+    readSeq = cursor.getLong(0);
+    readPos = cursor.getInt(8);
+    if (segments.isEmpty()) {
+      writeSeq = readSeq;
+      segments.put(writeSeq, map(segmentPath(writeSeq), settings.segmentBytes()));
+      readPos = 0;
+      saveCursor();
+      return;
+    }
+    if (!segments.containsKey(readSeq)) {
+      readSeq = segments.firstKey();
+      readPos = 0;
+    }
+
+    // The last segment is written to again: find its last intact record, clear the rest
+    writeSeq = segments.lastKey();
+    MappedByteBuffer last = segments.get(writeSeq);
+    writePos = scanEnd(last);
+    for (int i = writePos; i < last.capacity(); i++) last.put(i, (byte) 0);
+
+    for (var e : segments.tailMap(readSeq).entrySet()) {
+      backlog += countRecords(e.getValue(), e.getKey() == readSeq ? readPos : 0,
+          e.getKey() == writeSeq ? writePos : Integer.MAX_VALUE);
+    }
+    saveCursor();
+  }
+
+  /** Offset just past the last record whose checksum matches. */
+  private static int scanEnd(MappedByteBuffer segment) {
+    int pos = 0;
+    CRC32 crc = new CRC32();
+    while (pos + HEADER <= segment.capacity()) {
+      int length = segment.getInt(pos);
+      if (length <= 0 || pos + HEADER + length > segment.capacity()) break;
+      crc.reset();
+      crc.update(segment.slice(pos + HEADER, length));
+      if ((int) crc.getValue() != segment.getInt(pos + 4)) break;
+      pos += HEADER + length;
+    }
+    return pos;
+  }
+
+  private static long countRecords(MappedByteBuffer segment, int from, int limit) {
+    long count = 0;
+    int pos = from;
+    int end = Math.min(limit, segment.capacity());
+    while (pos + HEADER <= end) {
+      int length = segment.getInt(pos);
+      if (length <= 0) break;
+      count++;
+      pos += HEADER + length;
+    }
+    return count;
+  }
+
+  // ---------- files ----------
+
+  private synchronized long backlog() {
+    return backlog;
+  }
+
+  private synchronized long diskBytes() {
+    long bytes = 0;
+    for (MappedByteBuffer segment : segments.values()) bytes += segment.capacity();
+    return bytes;
+  }
+
+  private void saveCursor() {
+    cursor.putLong(0, readSeq);
+    cursor.putInt(8, readPos);
+  }
+
+  private void delete(long seq) {
+    segments.remove(seq);
+    try {
+      Files.deleteIfExists(segmentPath(seq));
+    } catch (IOException e) {
+      deleteLog.warn(e, "Could not delete span spool segment %d", seq);
+    }
+  }
+
+  private Path segmentPath(long seq) {
+    return settings.dir().resolve(String.format("segment-%016d.spool", seq));
+  }
+
+  // Null when another process, or another exporter in this one, holds the spool
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      return null;
+    }
+  }
+
+  // The mapping stays valid after the channel is closed
+  private static MappedByteBuffer map(Path file, int size) throws IOException {
+    try (FileChannel ch = FileChannel.open(file,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers finished spans per trace and decides once the trace's local root has ended (plus a
+ * short wait for stragglers). Traces with an error, a span slower than the latency threshold or
+ * a call above the token threshold are always kept; the rest are kept at {@code keepRatio},
+ * chosen by trace id so every span of a trace gets the same answer. Kept spans go to the
+ * delegate (normally the exporting BatchSpanProcessor) unchanged.
+ */
+final class TailSamplingSpanProcessor implements SpanProcessor {
+
+  private static final AttributeKey<Long> TOTAL_TOKENS = AttributeKey.longKey("llm.usage.total_tokens");
+  // Decisions are remembered this long for spans that end after their trace was decided
+  private static final long DECISION_MEMORY_NANOS = TimeUnit.MINUTES.toNanos(1);
+  // A trace whose local root never ends locally is decided after this long
+  private static final long MAX_TRACE_AGE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+  private static final class TraceBuffer {
+    final long createdNanos = System.nanoTime();
+    final List<ReadableSpan> spans = new ArrayList<>();
+    boolean interesting;
+    boolean rootEnded;
+    // Set once; spans that reach a decided buffer follow its decision instead of being added
+    boolean decided;
+    boolean keep;
+  }
+
+  private record Decision(boolean keep, long decidedNanos) {}
+
+  private final SpanProcessor delegate;
+  private final double keepRatio;
+  private final long latencyThresholdNanos;
+  private final long tokenThreshold;
+  private final long decisionWaitNanos;
+  private final int maxTraces;
+
+  private final Map<String, TraceBuffer> traces = new ConcurrentHashMap<>();
+  private final Map<String, Decision> decisions = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "tail-sampler");
+    t.setDaemon(true);
+    return t;
+  });
+
+  TailSamplingSpanProcessor(SpanProcessor delegate, double keepRatio, long latencyThresholdNanos,
+                            long tokenThreshold, long decisionWaitNanos, int maxTraces) {
+    this.delegate = delegate;
+    this.keepRatio = keepRatio;
+    this.latencyThresholdNanos = latencyThresholdNanos;
+    this.tokenThreshold = tokenThreshold;
+    this.decisionWaitNanos = decisionWaitNanos;
+    this.maxTraces = maxTraces;
+    long sweep = Math.max(decisionWaitNanos, TimeUnit.SECONDS.toNanos(1));
+    scheduler.scheduleWithFixedDelay(this::sweep, sweep, sweep, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void onStart(Context parentContext, ReadWriteSpan span) {
+    delegate.onStart(parentContext, span);
+  }
+
+  @Override
+  public boolean isStartRequired() {
+    return delegate.isStartRequired();
+  }
+
+  @Override
+  public void onEnd(ReadableSpan span) {
+    String traceId = span.getSpanContext().getTraceId();
+    Decision decided = decisions.get(traceId);
+    if (decided != null) {
+      if (decided.keep()) delegate.onEnd(span);
+      return;
+    }
+
+    TraceBuffer buffer = traces.computeIfAbsent(traceId, id -> new TraceBuffer());
+    boolean rootEnded;
+    synchronized (buffer) {
+      if (buffer.decided) {
+        // Decided while this span was on its way in
+        if (buffer.keep) delegate.onEnd(span);
+        return;
+      }
+      buffer.spans.add(span);
+      buffer.interesting |= isInteresting(span);
+      buffer.rootEnded |= isLocalRoot(span.getParentSpanContext());
+      rootEnded = buffer.rootEnded;
+    }
+
+    if (traces.size() > maxTraces) {
+      decide(traceId); // over capacity: no waiting for stragglers
+    } else if (rootEnded) {
+      scheduler.schedule(() -> decide(traceId), decisionWaitNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  @Override
+  public boolean isEndRequired() {
+    return true;
+  }
+
+  @Override
+  public CompletableResultCode forceFlush() {
+    traces.keySet().forEach(this::decide);
+    return delegate.forceFlush();
+  }
+
+  @Override
+  public CompletableResultCode shutdown() {
+    scheduler.shutdownNow();
+    traces.keySet().forEach(this::decide);
+    return delegate.shutdown();
+  }
+
+  // ---------- helpers ----------
+
+  private void decide(String traceId) {
+    TraceBuffer buffer = traces.get(traceId);
+    if (buffer == null) return;
+    List<ReadableSpan> spans;
+    boolean keep;
+    synchronized (buffer) {
+      if (buffer.decided) return;
+      keep = buffer.interesting || sampledByRatio(traceId);
+      buffer.decided = true;
+      buffer.keep = keep;
+      spans = List.copyOf(buffer.spans);
+      // Published before the buffer goes, so a later span never starts a fresh, undecided one
+      decisions.put(traceId, new Decision(keep, System.nanoTime()));
+    }
+    traces.remove(traceId, buffer);
+    if (keep) {
+      for (ReadableSpan span : spans) delegate.onEnd(span);
+    }
+  }
+
+  private void sweep() {
+    long now = System.nanoTime();
+    decisions.entrySet().removeIf(e -> now - e.getValue().decidedNanos() > DECISION_MEMORY_NANOS);
+    traces.forEach((traceId, buffer) -> {
+      if (now - buffer.createdNanos > MAX_TRACE_AGE_NANOS) decide(traceId);
+    });
+  }
+
+  private boolean isInteresting(ReadableSpan span) {
+    if (span.toSpanData().getStatus().getStatusCode() == StatusCode.ERROR) return true;
+    if (span.getLatencyNanos() >= latencyThresholdNanos) return true;
+    Long tokens = span.getAttribute(TOTAL_TOKENS);
+    return tokens != null && tokens >= tokenThreshold;
+  }
+
+  private static boolean isLocalRoot(SpanContext parent) {
+    return !parent.isValid() || parent.isRemote();
+  }
+
+  // Same idea as TraceIdRatioBased: compare the random low half of the trace id
+  private boolean sampledByRatio(String traceId) {
+    if (keepRatio >= 1.0) return true;
+    if (keepRatio <= 0.0) return false;
+    long low = Long.parseUnsignedLong(traceId.substring(16), 16) >>> 1;
+    return low < (long) (keepRatio * Long.MAX_VALUE);
+  }
+}
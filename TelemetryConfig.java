@@ -12,44 +12,59 @@ import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
-import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.SpanProcessor;
 // Optional: uncomment next line ONLY if some code uses GlobalOpenTelemetry.get()
 // import io.opentelemetry.api.GlobalOpenTelemetry;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 public class TelemetryConfig {
 
   @Bean
-  public OpenTelemetry openTelemetry() {
+  public OpenTelemetry openTelemetry(TraceSampling sampling, OtlpExporterFactory exporters,
+                                     SpanExportSettings export, SpanSpool spool, MetricsExport metrics) {
     Resource resource = Resource.getDefault().merge(
         Resource.create(Attributes.of(
             AttributeKey.stringKey("service.name"), "spring-oi-demo",
             AttributeKey.stringKey("service.version"), "0.1.0")));
 
-    // gRPC exporter to Phoenix
-    var exporter = OtlpGrpcSpanExporter.builder()
-        .setEndpoint("http://localhost:4317")
-        .build();
+    // otel.export.destinations (e.g. Phoenix and Arize at once), each with its own queue
+    List<SpanProcessor> processors = exporters.processors();
+    if (processors.isEmpty()) {
+      // gRPC exporter to Phoenix
+      var exporter = OtlpGrpcSpanExporter.builder()
+          .setEndpoint("http://localhost:4317")
+          .build();
 
-    // (Or use HTTP)
-    // var exporter = OtlpHttpSpanExporter.builder()
-    //     .setEndpoint("http://localhost:6006/v1/traces")
-    //     .build();
+      // (Or use HTTP)
+      // var exporter = OtlpHttpSpanExporter.builder()
+      //     .setEndpoint("http://localhost:6006/v1/traces")
+      //     .build();
+
+      processors = List.of(export.processor("phoenix", spool.wrap("phoenix", exporter)));
+    }
 
     var tracerProvider = SdkTracerProvider.builder()
         .setResource(resource)
-        .addSpanProcessor(BatchSpanProcessor.builder(exporter).build())
+        .setSampler(sampling.sampler())
+        .addSpanProcessor(sampling.wrap(SpanProcessor.composite(processors)))
         .build();
 
     OpenTelemetrySdk sdk = OpenTelemetrySdk.builder()
         .setTracerProvider(tracerProvider)
+        // otel.metrics.*, shared with the other variants
+        .setMeterProvider(metrics.meterProvider(resource))
         // keep W3C propagation
         .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
         .build();
 
+    export.bindMetrics(sdk);
+    spool.bindMetrics(sdk);
+
     // Optional: set the global if any library uses GlobalOpenTelemetry.get()
     // GlobalOpenTelemetry.set(sdk);
 
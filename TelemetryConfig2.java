@@ -17,7 +17,8 @@ public class TelemetryConfig {
   private String modelVersion;
 
   @Bean
-  public OpenTelemetry openTelemetry() {
+  public OpenTelemetry openTelemetry(TraceSampling sampling, SpanExportSettings export, SpanSpool spool,
+                                     MetricsExport metrics) {
     Resource resource =
         Resource.getDefault().merge(
             Resource.create(
@@ -36,13 +37,18 @@ public class TelemetryConfig {
     var tracerProvider =
         SdkTracerProvider.builder()
             .setResource(resource)
-            .addSpanProcessor(BatchSpanProcessor.builder(exporter).build())
+            .setSampler(sampling.sampler())
+            .addSpanProcessor(sampling.wrap(export.processor("arize", spool.wrap("arize", exporter))))
             .build();
 
-    return OpenTelemetrySdk.builder()
+    OpenTelemetrySdk sdk = OpenTelemetrySdk.builder()
         .setTracerProvider(tracerProvider)
+        .setMeterProvider(metrics.meterProvider(resource))
         .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
         .build();
+    export.bindMetrics(sdk);
+    spool.bindMetrics(sdk);
+    return sdk;
   }
 
   @Bean
@@ -14,7 +14,6 @@ import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
 import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
-import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -43,7 +42,8 @@ public class TelemetryConfig {
   private String modelVersion;
 
   @Bean
-  public OpenTelemetry openTelemetry() {
+  public OpenTelemetry openTelemetry(TraceSampling sampling, SpanExportSettings export, SpanSpool spool,
+                                     MetricsExport metrics) {
 
     Resource resource =
         Resource.getDefault().merge(
@@ -55,7 +55,7 @@ public class TelemetryConfig {
                     AttributeKey.stringKey("model_version"), modelVersion)));
 
     SdkTracerProviderBuilder tpBuilder =
-        SdkTracerProvider.builder().setResource(resource);
+        SdkTracerProvider.builder().setResource(resource).setSampler(sampling.sampler());
 
     boolean haveCreds = spaceId != null && !spaceId.isBlank()
                       && apiKey != null && !apiKey.isBlank();
@@ -68,16 +68,21 @@ public class TelemetryConfig {
               .addHeader("api_key", apiKey)
               .build();
 
-      tpBuilder.addSpanProcessor(BatchSpanProcessor.builder(exporter).build());
+      tpBuilder.addSpanProcessor(sampling.wrap(export.processor("arize", spool.wrap("arize", exporter))));
     }
     // Else: no exporter is added; spans are simply dropped. This keeps tests green.
 
     SdkTracerProvider tracerProvider = tpBuilder.build();
 
-    return OpenTelemetrySdk.builder()
+    OpenTelemetrySdk sdk = OpenTelemetrySdk.builder()
         .setTracerProvider(tracerProvider)
+        // Metrics go over OTLP (otel.metrics.*) even when spans are not exported
+        .setMeterProvider(metrics.meterProvider(resource))
         .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
         .build();
+    export.bindMetrics(sdk);
+    spool.bindMetrics(sdk);
+    return sdk;
   }
 
   @Bean
@@ -1,49 +1,94 @@
 package com.example.demoapp;
 
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.Map;
 
 @Service
 public class TokenService {
-  private final WebClient http = WebClient.builder().build();
-  private final AppProperties props;
+  private final WebClient http;
+  private final ApigeeProperties apigee;
+  private final AccessTokenCache tokenCache;
+  private final String basicAuth;
+  private final Tracer tracer;
 
-  public TokenService(AppProperties props) { this.props = props; }
+  public TokenService(ApigeeProperties apigee, WebClient http, OpenTelemetry otel) {
+    this.http = http;
+    this.apigee = apigee;
+    this.basicAuth = apigee.isConfigured() ? basicAuth(apigee) : null;
+    this.tracer = otel.getTracer("com.example.demoapp");
+    this.tokenCache = new AccessTokenCache(this::fetchToken,
+        apigee.getRefreshSkew(), apigee.getRefreshJitter(), apigee.getFetchTimeout(),
+        otel.getMeter("com.example.demoapp"));
+  }
 
-  /** Simple version: mint a fresh token every call (blocking). */
+  /** Cached token, refreshed shortly before expires_in runs out (blocking). */
   public String getBearerToken() {
-    if (props.getApigeeTokenUrl() == null ||
-        props.getApigeeConsumerKey() == null ||
-        props.getApigeeConsumerSecret() == null) {
-      throw new IllegalStateException("Missing Apigee settings in app.* (tokenUrl/consumerKey/consumerSecret).");
+    if (!apigee.isConfigured()) {
+      throw new IllegalStateException("Missing Apigee settings in apigee.* (tokenUrl/consumerKey/consumerSecret).");
     }
+    return tokenCache.get().block();
+  }
 
-    String basic = Base64.getEncoder().encodeToString(
-        (props.getApigeeConsumerKey() + ":" + props.getApigeeConsumerSecret()).getBytes(StandardCharsets.UTF_8));
+  /** One round trip to the token endpoint, as an {@code apigee.token} span under the caller's. */
+  private Mono<AccessTokenCache.Token> fetchToken() {
+    return Mono.deferContextual(view -> {
+      Context parent = ReactorTracing.parent(view);
+      Span span = tracer.spanBuilder("apigee.token").setParent(parent).startSpan();
+      return requestToken()
+          .doOnError(err -> {
+            span.recordException(err);
+            span.setStatus(StatusCode.ERROR);
+          })
+          .doFinally(sig -> span.end())
+          .contextWrite(ReactorTracing.with(parent.with(span)));
+    });
+  }
 
+  private Mono<AccessTokenCache.Token> requestToken() {
     MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
     form.add("grant_type", "client_credentials");
 
-    Map resp = http.post()
-        .uri(props.getApigeeTokenUrl())
-        .header(HttpHeaders.AUTHORIZATION, "Basic " + basic)
+    return http.post()
+        .uri(apigee.getTokenUrl())
+        .header(HttpHeaders.AUTHORIZATION, "Basic " + basicAuth)
         .contentType(MediaType.APPLICATION_FORM_URLENCODED)
         .bodyValue(form)
         .retrieve()
         .bodyToMono(Map.class)
-        .block();
+        .map(resp -> {
+          if (!resp.containsKey("access_token")) {
+            throw new IllegalStateException("Apigee token response missing access_token");
+          }
+          return new AccessTokenCache.Token(String.valueOf(resp.get("access_token")), expiresIn(resp));
+        });
+  }
 
-    if (resp == null || !resp.containsKey("access_token")) {
-      throw new IllegalStateException("Apigee token response missing access_token");
-    }
-    return String.valueOf(resp.get("access_token"));
+  // Apigee sends expires_in as a string ("3599"); other servers send a number
+  private Duration expiresIn(Map<?, ?> resp) {
+    try {
+      long seconds = Long.parseLong(String.valueOf(resp.get("expires_in")).trim());
+      if (seconds > 0) return Duration.ofSeconds(seconds);
+    } catch (NumberFormatException ignored) {}
+    return apigee.getDefaultExpiresIn();
+  }
+
+  private static String basicAuth(ApigeeProperties apigee) {
+    return Base64.getEncoder().encodeToString(
+        (apigee.getConsumerKey() + ":" + apigee.getConsumerSecret()).getBytes(StandardCharsets.UTF_8));
   }
 }
@@ -0,0 +1,60 @@
+package com.example.demoapp;
+
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Sampling shared by the {@code TelemetryConfig} variants.
+ *
+ * <p>Head: {@code otel.sampling.head-ratio} of new traces are recorded; child spans follow their
+ * parent. Tail (off unless {@code otel.sampling.tail.enabled}): recorded traces are held until
+ * they finish, then errors, calls slower than {@code latency-threshold} and calls using at least
+ * {@code token-threshold} tokens are exported, and the rest at {@code keep-ratio}.
+ * The defaults export everything, as before.
+ */
+@Component
+public class TraceSampling {
+
+  private final double headRatio;
+  private final boolean tailEnabled;
+  private final double tailKeepRatio;
+  private final Duration latencyThreshold;
+  private final long tokenThreshold;
+  private final Duration decisionWait;
+  private final int maxTraces;
+
+  public TraceSampling(
+      @Value("${otel.sampling.head-ratio:1.0}") double headRatio,
+      @Value("${otel.sampling.tail.enabled:false}") boolean tailEnabled,
+      @Value("${otel.sampling.tail.keep-ratio:0.1}") double tailKeepRatio,
+      @Value("${otel.sampling.tail.latency-threshold:10s}") Duration latencyThreshold,
+      @Value("${otel.sampling.tail.token-threshold:4000}") long tokenThreshold,
+      @Value("${otel.sampling.tail.decision-wait:2s}") Duration decisionWait,
+      @Value("${otel.sampling.tail.max-traces:10000}") int maxTraces) {
+    this.headRatio = headRatio;
+    this.tailEnabled = tailEnabled;
+    this.tailKeepRatio = tailKeepRatio;
+    this.latencyThreshold = latencyThreshold;
+    this.tokenThreshold = tokenThreshold;
+    this.decisionWait = decisionWait;
+    this.maxTraces = maxTraces;
+  }
+
+  public Sampler sampler() {
+    return headRatio >= 1.0
+        ? Sampler.parentBased(Sampler.alwaysOn())
+        : Sampler.parentBased(Sampler.traceIdRatioBased(headRatio));
+  }
+
+  /** Puts the tail sampler in front of {@code exporting} when enabled. */
+  public SpanProcessor wrap(SpanProcessor exporting) {
+    if (!tailEnabled) return exporting;
+    return new TailSamplingSpanProcessor(exporting, tailKeepRatio, latencyThreshold.toNanos(),
+        tokenThreshold, decisionWait.toNanos(), maxTraces);
+  }
+}
@@ -0,0 +1,71 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * A CLIENT span per outbound request, parented from the Reactor context (see
+ * {@link ReactorTracing}), with W3C {@code traceparent} injected into the request headers.
+ * The span ends when the response headers arrive, on error, or when the caller cancels the
+ * exchange (a timeout, a lost hedge, a disconnected client); a cancelled span gets a
+ * {@code cancelled} event so it is not mistaken for a request that simply completed.
+ */
+final class TracingExchangeFilter implements ExchangeFilterFunction {
+
+  private final Tracer tracer;
+  private final TextMapPropagator propagator;
+
+  TracingExchangeFilter(OpenTelemetry otel) {
+    this.tracer = otel.getTracer("com.example.demoapp");
+    this.propagator = otel.getPropagators().getTextMapPropagator();
+  }
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    return Mono.deferContextual(view -> {
+      String method = request.method().name();
+      Context parent = ReactorTracing.parent(view);
+      Span span = tracer.spanBuilder(method)
+          .setParent(parent)
+          .setSpanKind(SpanKind.CLIENT)
+          .startSpan();
+      span.setAttribute("http.request.method", method);
+      span.setAttribute("url.full", request.url().toString());
+      span.setAttribute("server.address", request.url().getHost());
+
+      Context context = parent.with(span);
+      ClientRequest traced = ClientRequest.from(request)
+          .headers(headers -> propagator.inject(context, headers, HttpHeaders::set))
+          .build();
+
+      return next.exchange(traced)
+          .doOnNext(response -> {
+            int status = response.statusCode().value();
+            span.setAttribute("http.response.status_code", status);
+            if (status >= 400) span.setStatus(StatusCode.ERROR);
+          })
+          .doOnError(err -> {
+            span.recordException(err);
+            span.setStatus(StatusCode.ERROR);
+          })
+          .doFinally(sig -> {
+            if (sig == SignalType.CANCEL) span.addEvent("cancelled");
+            span.end();
+          });
+    });
+  }
+}
@@ -0,0 +1,146 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import reactor.core.Exceptions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk mode on virtual threads ({@code app.bulk.mode=virtual-threads}): one virtual thread per
+ * JSONL line runs the plain blocking pipeline (token, body, call) with at most
+ * {@code concurrency} in flight. Same input and {@link BulkRunner.Summary} as the Reactor
+ * {@link BulkRunner}, so the two can be compared directly.
+ *
+ * <p>Lifetimes are structured: each run and each request own an executor in a
+ * try-with-resources block, so no subtask outlives its owner. Within a request the token fetch
+ * and body resolution run side by side and a failure in one cancels the other; interrupting the
+ * run cancels every pipeline. Pipelines cut short that way count as cancelled, not failed.
+ * ({@code StructuredTaskScope} is still a preview API, so the stable executor form is used.)
+ *
+ * <p>Each request is a {@code bulk.request} span made current on its own virtual thread; the
+ * token fetch and the {@code chat} span are its children.
+ */
+@Component
+public class VirtualThreadBulkRunner {
+
+  private final TokenService tokenService;
+  private final LlmClient llmClient;
+  private final BodySource bodySource;
+  private final Tracer tracer;
+
+  public VirtualThreadBulkRunner(TokenService tokenService, LlmClient llmClient, BodySource bodySource,
+                                 Tracer tracer) {
+    this.tokenService = tokenService;
+    this.llmClient = llmClient;
+    this.bodySource = bodySource;
+    this.tracer = tracer;
+  }
+
+  public BulkRunner.Summary run(Path file, int concurrency) throws IOException, InterruptedException {
+    Histogram latencies = new ConcurrentHistogram(3);
+    AtomicLong succeeded = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    AtomicLong cancelled = new AtomicLong();
+    // Lines are read only as permits free up, so the file is never held in memory
+    Semaphore permits = new Semaphore(Math.max(1, concurrency));
+    long start = System.nanoTime();
+
+    // close() waits for every pipeline started below
+    try (ExecutorService scope = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bulk-", 0).factory());
+         BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!StringUtils.hasText(line)) continue;
+          permits.acquire();
+          String current = line;
+          scope.submit(() -> {
+            try {
+              timedCall(current, latencies, succeeded, failed, cancelled);
+            } finally {
+              permits.release();
+            }
+          });
+        }
+      } catch (InterruptedException | IOException e) {
+        scope.shutdownNow();
+        throw e;
+      }
+    }
+    return new BulkRunner.Summary(succeeded.get(), failed.get(), cancelled.get(),
+        System.nanoTime() - start, latencies);
+  }
+
+  private void timedCall(String line, Histogram latencies, AtomicLong succeeded, AtomicLong failed,
+                         AtomicLong cancelled) {
+    long start = System.nanoTime();
+    Span span = tracer.spanBuilder("bulk.request").startSpan();
+    try (Scope ignored = span.makeCurrent()) {
+      call(line);
+      span.setStatus(StatusCode.OK);
+      succeeded.incrementAndGet();
+      latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    } catch (Exception e) {
+      if (interrupted(e)) {
+        // The run is being cancelled; keep the flag set for whatever runs next on this thread
+        Thread.currentThread().interrupt();
+        span.addEvent("cancelled");
+        cancelled.incrementAndGet();
+        return;
+      }
+      // One failed call should not end the run
+      span.recordException(e);
+      span.setStatus(StatusCode.ERROR);
+      failed.incrementAndGet();
+      latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    } finally {
+      span.end();
+    }
+  }
+
+  // block() rethrows an interrupt wrapped in a ReactiveException, and Future.get() may report
+  // the interrupted token fetch as an ExecutionException
+  private static boolean interrupted(Exception e) {
+    Throwable cause = Exceptions.unwrap(e);
+    return cause instanceof InterruptedException
+        || cause.getCause() instanceof InterruptedException
+        || Thread.currentThread().isInterrupted();
+  }
+
+  // Token and body side by side; the call needs both
+  private void call(String line) throws InterruptedException, ExecutionException {
+    try (ExecutorService request = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<String> token = request.submit(Context.current().wrap(tokenService::getBearerToken));
+      ChatBody body;
+      try {
+        // In template mode a line holds the variables, otherwise it is the whole body
+        body = bodySource.isTemplated() ? bodySource.render(line) : ChatBody.of(line);
+      } catch (RuntimeException e) {
+        token.cancel(true);
+        throw e;
+      }
+      llmClient.chat(body, token.get()).block();
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.example.demoapp;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark in this directory with the GC profiler, so each result comes with
+ * {@code gc.alloc.rate.norm} (bytes allocated per operation). An optional argument narrows the
+ * run with a regex, e.g. {@code ChatSpan} or {@code RequestHeaders.allHeaders}.
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {}
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(args.length > 0 ? args[0] : "com\\.example\\.demoapp\\..*Benchmark")
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
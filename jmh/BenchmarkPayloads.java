@@ -0,0 +1,67 @@
+package com.example.demoapp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Deterministic chat payloads for the JMH benchmarks. Sizes roughly follow what we send in
+ * production: a short chat, a chat with retrieved context, and a multi-hundred-KB RAG prompt.
+ */
+final class BenchmarkPayloads {
+
+  private static final String FILLER =
+      "The quarterly report covers revenue, operating margin and regional growth. ";
+
+  private BenchmarkPayloads() {}
+
+  /** Context size in characters for the "small", "medium" and "large" benchmark params. */
+  static int contextChars(String size) {
+    return switch (size) {
+      case "small" -> 512;
+      case "medium" -> 64 * 1024;
+      case "large" -> 512 * 1024;
+      default -> throw new IllegalArgumentException("Unknown payload size: " + size);
+    };
+  }
+
+  /** OpenAI-style chat request: system context, a short history and the user question. */
+  static String request(String size) {
+    String context = filler(contextChars(size));
+    return "{\"model\":\"gpt-4o-mini\",\"temperature\":0,"
+        + "\"messages\":["
+        + "{\"role\":\"system\",\"content\":\"Answer using the context below.\\n" + context + "\"},"
+        + "{\"role\":\"assistant\",\"content\":\"How can I help?\"},"
+        + "{\"role\":\"user\",\"content\":\"Summarise the regional growth figures.\"}"
+        + "],"
+        + "\"parameters\":{\"max_tokens\":512,\"top_p\":1}}";
+  }
+
+  /** OpenAI-style chat completion whose assistant message is about the size of the context. */
+  static String response(String size) {
+    String answer = filler(contextChars(size));
+    return "{\"id\":\"chatcmpl-bench\",\"object\":\"chat.completion\",\"model\":\"gpt-4o-mini\","
+        + "\"choices\":[{\"index\":0,"
+        + "\"message\":{\"role\":\"assistant\",\"content\":\"" + answer + "\"},"
+        + "\"finish_reason\":\"stop\"}],"
+        + "\"usage\":{\"prompt_tokens\":1200,\"completion_tokens\":" + answer.length() / 4
+        + ",\"total_tokens\":" + (1200 + answer.length() / 4) + "}}";
+  }
+
+  static Map<String, String> extraHeaders() {
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("x-wf-client-id", "bench-client");
+    headers.put("x-wf-api-key", "0123456789abcdef0123456789abcdef");
+    headers.put("x-wf-usecase-id", "summarisation");
+    headers.put("x-provider", "internal");
+    return headers;
+  }
+
+  private static String filler(int chars) {
+    StringBuilder sb = new StringBuilder(chars + FILLER.length());
+    while (sb.length() < chars) {
+      sb.append(FILLER);
+    }
+    sb.setLength(chars);
+    return sb.toString();
+  }
+}
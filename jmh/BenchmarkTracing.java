@@ -0,0 +1,22 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+/**
+ * A real SDK tracer whose spans record attributes but go nowhere, so the benchmarks measure
+ * attribute handling rather than a no-op span.
+ */
+final class BenchmarkTracing {
+
+  private static final SdkTracerProvider PROVIDER = SdkTracerProvider.builder()
+      .setSampler(Sampler.alwaysOn())
+      .build();
+
+  private BenchmarkTracing() {}
+
+  static Tracer tracer() {
+    return PROVIDER.get("com.example.demoapp.jmh");
+  }
+}
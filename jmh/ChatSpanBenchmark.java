@@ -0,0 +1,91 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one complete {@code chat} span with the full OpenInference attribute set: request
+ * inspection, input and output messages, usage. {@code truncate*} isolates the value limiting
+ * (old char-based {@code truncate} vs. the UTF-8 {@link SpanAttributeBudget}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatSpanBenchmark {
+
+  private static final int MARKER_BYTES =
+      SpanAttributeBudget.utf8Length(SpanAttributeBudget.MARKER, SpanAttributeBudget.MARKER.length());
+
+  @Param({"small", "medium", "large"})
+  public String size;
+
+  private final Tracer tracer = BenchmarkTracing.tracer();
+  private final SpanAttributeBudget budget = new SpanAttributeBudget(4000, 16384);
+  private final RequestInspector requestInspector = new RequestInspector();
+  private final ResponseInspector responseInspector = new ResponseInspector(budget);
+  private final Map<String, String> headers = BenchmarkPayloads.extraHeaders();
+  private ChatBody body;
+  private String response;
+  private String longValue;
+
+  @Setup
+  public void setup() {
+    body = ChatBody.of(BenchmarkPayloads.request(size));
+    response = BenchmarkPayloads.response(size);
+    // Long enough to be cut for every size, with multi-byte characters in it
+    longValue = "Überblick – ".repeat(1 + BenchmarkPayloads.contextChars(size) / 12);
+  }
+
+  /** The attributes LlmClient sets on a non-streaming chat span, start to end. */
+  @Benchmark
+  public Span fullChatSpan() {
+    // Fresh body each time so the cached inspection result is not reused
+    RequestInspector.RequestInfo info = requestInspector.inspect(ChatBody.wrap(body.bytes()), headers);
+    Span span = tracer.spanBuilder("chat").startSpan();
+    span.setAttribute("openinference.span.kind", "LLM");
+    span.setAttribute("llm.model_name", info.model());
+    span.setAttribute("llm.provider", info.provider());
+    span.setAttribute("request.id", "4f7c2b8e-1d3a-4e5f-9a6b-7c8d9e0f1a2b");
+    span.setAttribute("llm.input_messages.0.message.role", "user");
+    SpanAttributeBudget.Writer attrs = budget.forSpan(span);
+    attrs.set("llm.input_messages.0.message.content", info.prompt());
+    responseInspector.applyTo(attrs, response);
+    span.end();
+    return span;
+  }
+
+  @Benchmark
+  public String truncateChars() {
+    return truncate(longValue, 4000);
+  }
+
+  @Benchmark
+  public String truncateUtf8Budget() {
+    int cut = SpanAttributeBudget.cutIndex(longValue, 4000 - MARKER_BYTES);
+    return longValue.substring(0, cut) + SpanAttributeBudget.MARKER;
+  }
+
+  // Previous implementation, kept verbatim as the baseline
+  private static String truncate(String s, int max) {
+    if (s == null) return null;
+    return s.length() <= max ? s : s.substring(0, max);
+  }
+}
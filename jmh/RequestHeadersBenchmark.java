@@ -0,0 +1,117 @@
+package com.example.demoapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request header work in {@code LlmClient.prepare}, before and after
+ * {@link RequestHeaders}: two random UUIDs, the RFC 1123 date and the {@code app.extra-headers}
+ * loop, each on its own and all together. The first four benchmarks are the old code, kept
+ * as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestHeadersBenchmark {
+
+  private final Map<String, String> extras = BenchmarkPayloads.extraHeaders();
+  private final String token = "eyJhbGciOiJSUzI1NiJ9.bench.token";
+  private final RequestHeaders prepared = prepared(extras);
+
+  // ---------- before ----------
+
+  @Benchmark
+  public String randomUuid() {
+    return UUID.randomUUID().toString();
+  }
+
+  @Benchmark
+  public String rfc1123Date() {
+    return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC));
+  }
+
+  @Benchmark
+  public HttpHeaders extraHeadersLoop() {
+    HttpHeaders headers = new HttpHeaders();
+    addExtras(headers);
+    return headers;
+  }
+
+  /** Everything the old {@code prepare} added, in the same order. */
+  @Benchmark
+  public HttpHeaders allHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.add("X-Request-Id", UUID.randomUUID().toString());
+    headers.add("x-wf-request-date", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)));
+    headers.add("x-correlation-id", UUID.randomUUID().toString());
+    headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+    headers.add(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+    if (StringUtils.hasText(token)) {
+      headers.add(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+    addExtras(headers);
+    return headers;
+  }
+
+  // ---------- after ----------
+
+  @Benchmark
+  public String fastId() {
+    return prepared.newId();
+  }
+
+  @Benchmark
+  public String cachedDate() {
+    return prepared.date();
+  }
+
+  @Benchmark
+  public HttpHeaders fixedHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    prepared.addFixed(headers, MediaType.APPLICATION_JSON);
+    return headers;
+  }
+
+  /** Same headers as {@link #allHeaders()}, from {@link RequestHeaders#apply}. */
+  @Benchmark
+  public HttpHeaders allHeadersPrepared() {
+    HttpHeaders headers = new HttpHeaders();
+    prepared.apply(headers, MediaType.APPLICATION_JSON, prepared.newId(), token);
+    return headers;
+  }
+
+  private static RequestHeaders prepared(Map<String, String> extras) {
+    AppProperties props = new AppProperties();
+    props.setExtraHeaders(extras);
+    return new RequestHeaders(props);
+  }
+
+  private void addExtras(HttpHeaders headers) {
+    for (var e : extras.entrySet()) {
+      if (StringUtils.hasText(e.getKey()) && e.getValue() != null) {
+        headers.add(e.getKey(), e.getValue());
+      }
+    }
+  }
+}
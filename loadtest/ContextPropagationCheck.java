@@ -0,0 +1,208 @@
+package com.example.demoapp;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency stress check for trace context propagation through Reactor. Runs many chats at
+ * once against {@link StubServers}, each under its own root span, then verifies every trace
+ * tree: {@code request -> chat -> POST}, plus {@code apigee.token -> POST} for calls that
+ * fetched the token, all in one trace with no foreign parents. Background token refreshes
+ * are their own {@code apigee.token -> POST} traces. Also fails if any span is current on
+ * an event-loop thread while responses are delivered (a leaked {@code Scope}).
+ *
+ * <pre>
+ * java ... com.example.demoapp.ContextPropagationCheck --requests=20000 --concurrency=2000
+ * </pre>
+ *
+ * A short token lifetime ({@code --token-expires-in}, default 2s) keeps token fetches
+ * happening mid-run. Exits with status 1 on any broken tree.
+ */
+public final class ContextPropagationCheck {
+
+  private static final String BODY =
+      "{\"model\":\"stub-model\",\"messages\":[{\"role\":\"user\",\"content\":\"ping\"}]}";
+
+  private ContextPropagationCheck() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opts = parse(args);
+    int requests = Integer.parseInt(opts.getOrDefault("requests", "20000"));
+    int concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "2000"));
+    long expiresIn = Long.parseLong(opts.getOrDefault("token-expires-in", "2"));
+
+    Queue<SpanData> ended = new ConcurrentLinkedQueue<>();
+    OpenTelemetrySdk sdk = OpenTelemetrySdk.builder()
+        .setTracerProvider(SdkTracerProvider.builder()
+            .setSampler(Sampler.alwaysOn())
+            .addSpanProcessor(new Collector(ended))
+            .build())
+        .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+        .build();
+
+    StubServers.Settings stubSettings = new StubServers.Settings(
+        Duration.ofMillis(20), Duration.ofMillis(30), 0, 0, Duration.ZERO, Duration.ofMillis(20), expiresIn);
+
+    try (StubServers stubs = new StubServers(stubSettings);
+         ConfigurableApplicationContext ctx = start(stubs, sdk)) {
+      LlmClient client = ctx.getBean(LlmClient.class);
+      Tracer tracer = sdk.getTracer("context-propagation-check");
+      AtomicLong leaked = new AtomicLong();
+      AtomicLong failed = new AtomicLong();
+
+      // The app's own startup call is not part of the check
+      Thread.sleep(2000);
+      ended.clear();
+
+      long t0 = System.nanoTime();
+      Flux.range(0, requests)
+          .flatMap(i -> {
+            Span root = tracer.spanBuilder("request").setNoParent().startSpan();
+            return client.chat(BODY)
+                .doOnNext(resp -> {
+                  // Delivered on an event-loop thread: nothing may be current there
+                  if (Span.current().getSpanContext().isValid()) leaked.incrementAndGet();
+                })
+                .doOnError(err -> failed.incrementAndGet())
+                .onErrorResume(err -> Mono.empty())
+                .doFinally(sig -> root.end())
+                .contextWrite(ReactorTracing.with(Context.root().with(root)));
+          }, concurrency)
+          .blockLast(Duration.ofMinutes(10));
+      double seconds = (System.nanoTime() - t0) / 1e9;
+
+      List<String> problems = verify(new ArrayList<>(ended));
+      System.out.printf("%d requests at concurrency %d in %.1f s: %d failed, %d token fetches, %d spans%n",
+          requests, concurrency, seconds, failed.get(), stubs.tokenCalls.get(), ended.size());
+      System.out.printf("Broken traces: %d, spans current on the event loop: %d%n", problems.size(), leaked.get());
+      problems.stream().limit(20).forEach(p -> System.out.println("  " + p));
+      if (!problems.isEmpty() || leaked.get() > 0 || failed.get() > 0) {
+        System.exit(1);
+      }
+    }
+  }
+
+  // ---------- verification ----------
+
+  private static List<String> verify(List<SpanData> spans) {
+    Map<String, List<SpanData>> byTrace = new HashMap<>();
+    for (SpanData s : spans) {
+      byTrace.computeIfAbsent(s.getTraceId(), k -> new ArrayList<>()).add(s);
+    }
+    List<String> problems = new ArrayList<>();
+    for (var e : byTrace.entrySet()) {
+      String problem = verifyTrace(e.getValue());
+      if (problem != null) problems.add(e.getKey() + ": " + problem);
+    }
+    return problems;
+  }
+
+  private static String verifyTrace(List<SpanData> trace) {
+    Map<String, SpanData> byId = new HashMap<>();
+    for (SpanData s : trace) byId.put(s.getSpanId(), s);
+
+    List<SpanData> roots = trace.stream().filter(s -> !s.getParentSpanContext().isValid()).toList();
+    if (roots.size() == 1 && "apigee.token".equals(roots.get(0).getName())) {
+      // A background refresh ahead of expiry: its own trace, one POST under it
+      return trace.size() == 2 && trace.stream().anyMatch(s -> s.getName().equals("POST"))
+          ? null : "background token refresh with " + (trace.size() - 1) + " children";
+    }
+    if (roots.size() != 1 || !"request".equals(roots.get(0).getName())) {
+      return "expected one 'request' root, got " + roots.stream().map(SpanData::getName).toList();
+    }
+    int chats = 0;
+    int posts = 0;
+    for (SpanData s : trace) {
+      if (s == roots.get(0)) continue;
+      SpanData parent = byId.get(s.getParentSpanId());
+      if (parent == null) return s.getName() + " has a parent outside its trace";
+      String allowed = switch (s.getName()) {
+        case "chat" -> "request";
+        case "apigee.token" -> "chat";
+        case "POST" -> "chat|apigee.token";
+        default -> "";
+      };
+      if (!("|" + allowed + "|").contains("|" + parent.getName() + "|")) {
+        return s.getName() + " under " + parent.getName();
+      }
+      if (s.getName().equals("chat")) chats++;
+      if (s.getName().equals("POST")) posts++;
+    }
+    if (chats != 1) return chats + " chat spans";
+    // one upstream call, plus one per token fetch
+    long tokens = trace.stream().filter(s -> s.getName().equals("apigee.token")).count();
+    if (posts != 1 + tokens) return posts + " POST spans for " + tokens + " token fetches";
+    return null;
+  }
+
+  /** Keeps every ended span in memory. */
+  private record Collector(Queue<SpanData> ended) implements SpanProcessor {
+    @Override public void onStart(Context parentContext, ReadWriteSpan span) {}
+    @Override public boolean isStartRequired() { return false; }
+    @Override public void onEnd(ReadableSpan span) { ended.add(span.toSpanData()); }
+    @Override public boolean isEndRequired() { return true; }
+  }
+
+  // ---------- setup ----------
+
+  private static ConfigurableApplicationContext start(StubServers stubs, OpenTelemetry otel) {
+    Map<String, Object> props = new HashMap<>();
+    props.put("app.url", stubs.llmUrl());
+    props.put("app.body", BODY);
+    props.put("app.merge-inflight", false);
+    props.put("apigee.token-url", stubs.tokenUrl());
+    props.put("apigee.consumer-key", "check");
+    props.put("apigee.consumer-secret", "check");
+    props.put("otel.export.destinations[0].name", "stub");
+    props.put("otel.export.destinations[0].protocol", "http");
+    props.put("otel.export.destinations[0].endpoint", stubs.otlpTracesUrl());
+    props.put("otel.metrics.enabled", false);
+    return new SpringApplicationBuilder(DemoappApplication.class)
+        .web(WebApplicationType.NONE)
+        .properties(props)
+        // Replaces the app's SDK for every injection point, so all spans land in the collector
+        .initializers(ctx -> ((GenericApplicationContext) ctx).registerBean(
+            "checkOpenTelemetry", OpenTelemetry.class, () -> otel, bd -> bd.setPrimary(true)))
+        .run();
+  }
+
+  private static Map<String, String> parse(String[] args) {
+    Map<String, String> opts = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+      int eq = arg.indexOf('=');
+      opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+    }
+    return opts;
+  }
+}
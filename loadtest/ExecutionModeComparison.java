@@ -0,0 +1,154 @@
+package com.example.demoapp;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the same JSONL file through both bulk modes, {@link BulkRunner} (Reactor) and
+ * {@link VirtualThreadBulkRunner}, against {@link StubServers} and prints throughput, latency,
+ * peak heap and peak platform thread count for each.
+ *
+ * <pre>
+ * java ... com.example.demoapp.ExecutionModeComparison --requests=20000 --concurrency=2000 --latency=200ms
+ * </pre>
+ *
+ * Options (defaults): requests (20000), concurrency (1000), latency (200ms), jitter (50ms),
+ * warmup (2000 requests per mode).
+ */
+public final class ExecutionModeComparison {
+
+  private static final String BODY =
+      "{\"model\":\"stub-model\",\"messages\":[{\"role\":\"user\",\"content\":\"Summarise line %d.\"}]}";
+
+  private ExecutionModeComparison() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opts = parse(args);
+    int requests = Integer.parseInt(opts.getOrDefault("requests", "20000"));
+    int concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "1000"));
+    int warmup = Integer.parseInt(opts.getOrDefault("warmup", "2000"));
+
+    StubServers.Settings stubSettings = new StubServers.Settings(
+        duration(opts.getOrDefault("latency", "200ms")), duration(opts.getOrDefault("jitter", "50ms")),
+        0, 0, Duration.ZERO, Duration.ofMillis(20), 3599);
+
+    Path warmupFile = bodies(warmup);
+    Path file = bodies(requests);
+    try (StubServers stubs = new StubServers(stubSettings);
+         ConfigurableApplicationContext ctx = start(stubs)) {
+      BulkRunner reactor = ctx.getBean(BulkRunner.class);
+      VirtualThreadBulkRunner virtual = ctx.getBean(VirtualThreadBulkRunner.class);
+
+      reactor.run(warmupFile, concurrency).block();
+      virtual.run(warmupFile, concurrency);
+
+      System.out.printf("%d requests, concurrency %d%n", requests, concurrency);
+      measure("reactor", () -> reactor.run(file, concurrency).block());
+      measure("virtual-threads", () -> virtual.run(file, concurrency));
+    } finally {
+      Files.deleteIfExists(warmupFile);
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private interface Run {
+    BulkRunner.Summary run() throws Exception;
+  }
+
+  private static void measure(String mode, Run run) throws Exception {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    System.gc();
+    long baseline = memory.getHeapMemoryUsage().getUsed();
+    threads.resetPeakThreadCount();
+
+    // Sampled rather than exact; good enough to compare the two modes
+    AtomicLong peakHeap = new AtomicLong(baseline);
+    Thread sampler = Thread.ofPlatform().daemon().name("heap-sampler").start(() -> {
+      while (!Thread.currentThread().isInterrupted()) {
+        peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    });
+
+    BulkRunner.Summary summary;
+    try {
+      summary = run.run();
+    } finally {
+      sampler.interrupt();
+      sampler.join();
+    }
+
+    System.out.println("== " + mode);
+    summary.print();
+    System.out.printf("Heap MB: baseline=%.1f peak=%.1f; peak platform threads=%d%n",
+        baseline / 1048576.0, peakHeap.get() / 1048576.0, threads.getPeakThreadCount());
+  }
+
+  // ---------- setup ----------
+
+  private static Path bodies(int count) throws Exception {
+    Path file = Files.createTempFile("bulk-bodies", ".jsonl");
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < count; i++) {
+        out.write(String.format(BODY, i));
+        out.newLine();
+      }
+    }
+    return file;
+  }
+
+  private static ConfigurableApplicationContext start(StubServers stubs) {
+    Map<String, Object> props = new HashMap<>();
+    props.put("app.url", stubs.llmUrl());
+    props.put("app.body", String.format(BODY, -1));
+    props.put("apigee.token-url", stubs.tokenUrl());
+    props.put("apigee.consumer-key", "compare");
+    props.put("apigee.consumer-secret", "compare");
+    props.put("otel.export.destinations[0].name", "stub");
+    props.put("otel.export.destinations[0].protocol", "http");
+    props.put("otel.export.destinations[0].endpoint", stubs.otlpTracesUrl());
+    props.put("otel.metrics.enabled", false);
+    return new SpringApplicationBuilder(DemoappApplication.class)
+        .web(WebApplicationType.NONE)
+        .properties(props)
+        .run();
+  }
+
+  private static Map<String, String> parse(String[] args) {
+    Map<String, String> opts = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+      int eq = arg.indexOf('=');
+      opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+    }
+    return opts;
+  }
+
+  // 30s, 250ms, 2m
+  private static Duration duration(String s) {
+    if (s.endsWith("ms")) return Duration.ofMillis(Long.parseLong(s.substring(0, s.length() - 2)));
+    if (s.endsWith("s")) return Duration.ofSeconds(Long.parseLong(s.substring(0, s.length() - 1)));
+    if (s.endsWith("m")) return Duration.ofMinutes(Long.parseLong(s.substring(0, s.length() - 1)));
+    throw new IllegalArgumentException("Bad duration: " + s);
+  }
+}
@@ -0,0 +1,208 @@
+package com.example.demoapp;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import reactor.core.publisher.Flux;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load test of the whole pipeline (token fetch, WebClient call, span export) against
+ * {@link StubServers}, fully offline.
+ *
+ * <p>Calls start on a fixed schedule ({@code --rate} per second) whether or not earlier calls
+ * have finished. Latency is measured from each call's <em>intended</em> start, so a stall that
+ * delays later calls shows up in their latency (no coordinated omission); the service time
+ * from the actual start is reported next to it. Example:
+ *
+ * <pre>
+ * java ... com.example.demoapp.LoadTest --rate=200 --duration=60s --latency=300ms --stream=true
+ * </pre>
+ *
+ * Options (defaults): rate (100), duration (30s), warmup (10s), latency (200ms), jitter (50ms),
+ * error-rate (0), stream (false), chunks (20), chunk-delay (15ms), token-latency (20ms),
+ * token-expires-in (3599), max-outstanding (10000), report (loadtest-latency.hgrm).
+ */
+public final class LoadTest {
+
+  private static final String BODY =
+      "{\"model\":\"stub-model\",\"temperature\":0.7,\"messages\":["
+          + "{\"role\":\"system\",\"content\":\"Answer using the quarterly report.\"},"
+          + "{\"role\":\"user\",\"content\":\"Summarise the regional growth figures.\"}]}";
+  private static final String STREAM_BODY = BODY.replace("\"temperature\":0.7", "\"temperature\":0.7,\"stream\":true");
+
+  private LoadTest() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opts = parse(args);
+    int rate = Integer.parseInt(opts.getOrDefault("rate", "100"));
+    Duration duration = duration(opts.getOrDefault("duration", "30s"));
+    Duration warmup = duration(opts.getOrDefault("warmup", "10s"));
+    boolean stream = Boolean.parseBoolean(opts.getOrDefault("stream", "false"));
+    long maxOutstanding = Long.parseLong(opts.getOrDefault("max-outstanding", "10000"));
+    String report = opts.getOrDefault("report", "loadtest-latency.hgrm");
+
+    StubServers.Settings stubSettings = new StubServers.Settings(
+        duration(opts.getOrDefault("latency", "200ms")),
+        duration(opts.getOrDefault("jitter", "50ms")),
+        Double.parseDouble(opts.getOrDefault("error-rate", "0")),
+        Integer.parseInt(opts.getOrDefault("chunks", "20")),
+        duration(opts.getOrDefault("chunk-delay", "15ms")),
+        duration(opts.getOrDefault("token-latency", "20ms")),
+        Long.parseLong(opts.getOrDefault("token-expires-in", "3599")));
+
+    try (StubServers stubs = new StubServers(stubSettings);
+         ConfigurableApplicationContext ctx = start(stubs, stream)) {
+      LlmClient client = ctx.getBean(LlmClient.class);
+
+      System.out.printf("Warm-up: %d req/s for %s%n", rate, warmup);
+      drive(client, stream, rate, warmup, maxOutstanding);
+
+      System.out.printf("Measuring: %d req/s for %s%n", rate, duration);
+      Result result = drive(client, stream, rate, duration, maxOutstanding);
+
+      result.print();
+      System.out.printf("Stubs: llm=%d (%d injected errors) token=%d otlp=%d requests / %d KB%n",
+          stubs.llmCalls.get(), stubs.llmErrors.get(), stubs.tokenCalls.get(),
+          stubs.otlpRequests.get(), stubs.otlpBytes.get() / 1024);
+      writeReport(report, result);
+      System.out.println("HDR percentile distribution (ms): " + report);
+    }
+  }
+
+  // ---------- the open-loop driver ----------
+
+  record Result(long sent, long succeeded, long failed, long shed, long elapsedNanos,
+                Histogram latency, Histogram serviceTime) {
+
+    void print() {
+      System.out.printf("Sent %d in %.1f s (%.1f req/s): %d ok, %d failed, %d shed%n",
+          sent, elapsedNanos / 1e9, sent / (elapsedNanos / 1e9), succeeded, failed, shed);
+      line("Latency (from intended start)", latency);
+      line("Service time (from actual start)", serviceTime);
+    }
+
+    private static void line(String label, Histogram h) {
+      System.out.printf("%s ms: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n", label,
+          h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+          h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0,
+          h.getMaxValue() / 1000.0);
+    }
+  }
+
+  private static Result drive(LlmClient client, boolean stream, int rate, Duration duration, long maxOutstanding)
+      throws InterruptedException {
+    Histogram latency = new ConcurrentHistogram(3);
+    Histogram serviceTime = new ConcurrentHistogram(3);
+    AtomicLong succeeded = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    AtomicLong outstanding = new AtomicLong();
+    long shed = 0;
+    long sent = 0;
+
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime();
+    long end = start + duration.toNanos();
+    for (long i = 0; ; i++) {
+      long intended = start + i * intervalNanos;
+      if (intended >= end) break;
+      long now;
+      while ((now = System.nanoTime()) < intended) {
+        LockSupport.parkNanos(intended - now);
+      }
+      sent++;
+      if (outstanding.get() >= maxOutstanding) {
+        // Past this point the run measures the backlog, not the app; counted separately
+        shed++;
+        continue;
+      }
+      outstanding.incrementAndGet();
+      long actual = now;
+      Publisher<String> call = stream ? client.chatStream(STREAM_BODY) : client.chat(BODY);
+      Flux.from(call).subscribe(
+          ignored -> {},
+          err -> {
+            failed.incrementAndGet();
+            done(latency, serviceTime, intended, actual, outstanding);
+          },
+          () -> {
+            succeeded.incrementAndGet();
+            done(latency, serviceTime, intended, actual, outstanding);
+          });
+    }
+
+    // Let the tail finish; it belongs to this phase
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+    while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    return new Result(sent, succeeded.get(), failed.get(), shed, System.nanoTime() - start, latency, serviceTime);
+  }
+
+  private static void done(Histogram latency, Histogram serviceTime, long intended, long actual,
+                           AtomicLong outstanding) {
+    long now = System.nanoTime();
+    latency.recordValue(TimeUnit.NANOSECONDS.toMicros(now - intended));
+    serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(now - actual));
+    outstanding.decrementAndGet();
+  }
+
+  // ---------- setup ----------
+
+  private static ConfigurableApplicationContext start(StubServers stubs, boolean stream) {
+    Map<String, Object> props = new HashMap<>();
+    props.put("app.url", stubs.llmUrl());
+    props.put("app.body", stream ? STREAM_BODY : BODY);
+    props.put("app.stream", stream);
+    props.put("apigee.token-url", stubs.tokenUrl());
+    props.put("apigee.consumer-key", "loadtest");
+    props.put("apigee.consumer-secret", "loadtest");
+    props.put("otel.export.destinations[0].name", "stub");
+    props.put("otel.export.destinations[0].protocol", "http");
+    props.put("otel.export.destinations[0].endpoint", stubs.otlpTracesUrl());
+    props.put("otel.metrics.enabled", false);
+    return new SpringApplicationBuilder(DemoappApplication.class)
+        .web(WebApplicationType.NONE)
+        .properties(props)
+        .run();
+  }
+
+  private static void writeReport(String file, Result result) throws FileNotFoundException {
+    try (PrintStream out = new PrintStream(file)) {
+      // Recorded in microseconds, written in milliseconds
+      result.latency().outputPercentileDistribution(out, 1000.0);
+    }
+  }
+
+  private static Map<String, String> parse(String[] args) {
+    Map<String, String> opts = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+      int eq = arg.indexOf('=');
+      opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+    }
+    return opts;
+  }
+
+  // 30s, 250ms, 2m
+  private static Duration duration(String s) {
+    if (s.endsWith("ms")) return Duration.ofMillis(Long.parseLong(s.substring(0, s.length() - 2)));
+    if (s.endsWith("s")) return Duration.ofSeconds(Long.parseLong(s.substring(0, s.length() - 1)));
+    if (s.endsWith("m")) return Duration.ofMinutes(Long.parseLong(s.substring(0, s.length() - 1)));
+    throw new IllegalArgumentException("Bad duration: " + s);
+  }
+}
@@ -0,0 +1,146 @@
+package com.example.demoapp;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import org.reactivestreams.Publisher;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-ins for everything the app talks to: the LLM endpoint, the Apigee token endpoint
+ * and an OTLP/HTTP trace receiver. Each is its own Reactor Netty server on a free loopback port.
+ */
+final class StubServers implements AutoCloseable {
+
+  /**
+   * LLM stub behaviour. Latency is {@code latency} plus up to {@code jitter}; streamed
+   * responses send {@code chunks} deltas {@code chunkDelay} apart after that. A share of
+   * {@code errorRate} calls fails with a 429 or 500.
+   */
+  record Settings(Duration latency, Duration jitter, double errorRate, int chunks, Duration chunkDelay,
+                  Duration tokenLatency, long tokenExpiresInSeconds) {}
+
+  private static final String COMPLETION =
+      "{\"id\":\"chatcmpl-stub\",\"object\":\"chat.completion\",\"model\":\"stub-model\","
+          + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+          + "\"content\":\"Regional growth was strongest in APAC at 12%, followed by EMEA at 7%.\"},"
+          + "\"finish_reason\":\"stop\"}],"
+          + "\"usage\":{\"prompt_tokens\":850,\"completion_tokens\":24,\"total_tokens\":874}}";
+  private static final String DELTA =
+      "{\"object\":\"chat.completion.chunk\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"token \"}}]}";
+  private static final String USAGE_CHUNK =
+      "{\"object\":\"chat.completion.chunk\",\"choices\":[],"
+          + "\"usage\":{\"prompt_tokens\":850,\"completion_tokens\":%d,\"total_tokens\":%d}}";
+
+  final AtomicLong llmCalls = new AtomicLong();
+  final AtomicLong llmErrors = new AtomicLong();
+  final AtomicLong tokenCalls = new AtomicLong();
+  final AtomicLong otlpRequests = new AtomicLong();
+  final AtomicLong otlpBytes = new AtomicLong();
+
+  private final Settings settings;
+  private final DisposableServer llm;
+  private final DisposableServer token;
+  private final DisposableServer otlp;
+
+  StubServers(Settings settings) {
+    this.settings = settings;
+    this.llm = HttpServer.create().host("127.0.0.1").port(0)
+        .route(r -> r.post("/v1/chat/completions", this::chat))
+        .bindNow();
+    this.token = HttpServer.create().host("127.0.0.1").port(0)
+        .route(r -> r.post("/oauth/token", this::token))
+        .bindNow();
+    this.otlp = HttpServer.create().host("127.0.0.1").port(0)
+        .route(r -> r.post("/v1/traces", this::traces))
+        .bindNow();
+  }
+
+  String llmUrl() {
+    return "http://127.0.0.1:" + llm.port() + "/v1/chat/completions";
+  }
+
+  String tokenUrl() {
+    return "http://127.0.0.1:" + token.port() + "/oauth/token";
+  }
+
+  String otlpTracesUrl() {
+    return "http://127.0.0.1:" + otlp.port() + "/v1/traces";
+  }
+
+  @Override
+  public void close() {
+    llm.disposeNow();
+    token.disposeNow();
+    otlp.disposeNow();
+  }
+
+  // ---------- handlers ----------
+
+  private Publisher<Void> chat(HttpServerRequest req, HttpServerResponse res) {
+    llmCalls.incrementAndGet();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long jitter = settings.jitter().toNanos();
+    Duration delay = settings.latency().plusNanos(jitter > 0 ? random.nextLong(jitter) : 0);
+    boolean fail = random.nextDouble() < settings.errorRate();
+    String accept = req.requestHeaders().get(HttpHeaderNames.ACCEPT, "");
+
+    return req.receive().aggregate().then(Mono.delay(delay)).then(Mono.defer(() -> {
+      if (fail) {
+        llmErrors.incrementAndGet();
+        boolean throttled = ThreadLocalRandom.current().nextBoolean();
+        return res.status(throttled ? HttpResponseStatus.TOO_MANY_REQUESTS : HttpResponseStatus.INTERNAL_SERVER_ERROR)
+            .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+            .header(HttpHeaderNames.RETRY_AFTER, "1")
+            .sendString(Mono.just("{\"error\":{\"message\":\"stub failure\"}}"))
+            .then();
+      }
+      if (!accept.contains("text/event-stream")) {
+        return res.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+            .sendString(Mono.just(COMPLETION))
+            .then();
+      }
+      int chunks = settings.chunks();
+      Flux<String> events = Flux.range(0, chunks)
+          .delayElements(settings.chunkDelay())
+          .map(i -> "data: " + DELTA + "\n\n")
+          .concatWith(Flux.just(
+              "data: " + String.format(USAGE_CHUNK, chunks, 850 + chunks) + "\n\n",
+              "data: [DONE]\n\n"));
+      return res.header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream")
+          .sendString(events)
+          .then();
+    }));
+  }
+
+  private Publisher<Void> token(HttpServerRequest req, HttpServerResponse res) {
+    long n = tokenCalls.incrementAndGet();
+    // Apigee style: expires_in as a string
+    String body = "{\"access_token\":\"stub-token-" + n + "\",\"token_type\":\"Bearer\","
+        + "\"expires_in\":\"" + settings.tokenExpiresInSeconds() + "\"}";
+    return req.receive().aggregate().then(Mono.delay(settings.tokenLatency())).then(
+        res.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+            .sendString(Mono.just(body))
+            .then());
+  }
+
+  // An empty body is a valid (empty) ExportTraceServiceResponse
+  private Publisher<Void> traces(HttpServerRequest req, HttpServerResponse res) {
+    return req.receive().aggregate().asByteArray()
+        .doOnNext(bytes -> {
+          otlpRequests.incrementAndGet();
+          otlpBytes.addAndGet(bytes.length);
+        })
+        .then(res.header(HttpHeaderNames.CONTENT_TYPE, "application/x-protobuf").send().then());
+  }
+}